@@ -4,6 +4,8 @@ import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
 import net.runelite.client.config.ConfigSection;
+import net.runelite.client.config.Range;
+import net.runelite.client.config.Units;
 
 @ConfigGroup("gnomegpt")
 public interface GnomeGptConfig extends Config
@@ -188,4 +190,67 @@ public interface GnomeGptConfig extends Config
     {
         return "";
     }
+
+    @ConfigItem(
+        keyName = "prefetchWhileTyping",
+        name = "Prefetch While Typing",
+        description = "Start looking up wiki pages and your stats while you type, so answers start sooner",
+        section = behaviorSection,
+        position = 3
+    )
+    default boolean prefetchWhileTyping()
+    {
+        return true;
+    }
+
+    @ConfigItem(
+        keyName = "showTimings",
+        name = "Show Timings",
+        description = "Show a debug line under each answer with where the time went (see also /perf)",
+        section = behaviorSection,
+        position = 4
+    )
+    default boolean showTimings()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+        keyName = "useHttp2",
+        name = "Use HTTP/2",
+        description = "Multiplex wiki and AI requests over HTTP/2 where the server supports it (takes effect when the plugin restarts)",
+        section = behaviorSection,
+        position = 5
+    )
+    default boolean useHttp2()
+    {
+        return true;
+    }
+
+    @Range(max = 10000)
+    @Units(Units.MILLISECONDS)
+    @ConfigItem(
+        keyName = "contextBudgetMs",
+        name = "Context Time Budget",
+        description = "How long to wait for wiki, hiscores and price lookups before answering with whatever is ready (0 = wait for every lookup)",
+        section = behaviorSection,
+        position = 6
+    )
+    default int contextBudgetMs()
+    {
+        return 1500;
+    }
+
+    @Range(max = 500)
+    @ConfigItem(
+        keyName = "wikiCacheMb",
+        name = "Wiki Cache Size (MB)",
+        description = "Disk space for cached wiki pages, kept across restarts and rechecked for edits every 10 minutes (0 = no cache, takes effect when the plugin restarts)",
+        section = behaviorSection,
+        position = 7
+    )
+    default int wikiCacheMb()
+    {
+        return 50;
+    }
 }
@@ -8,6 +8,8 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.LineBorder;
 import javax.swing.border.MatteBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -33,10 +35,16 @@ public class GnomeGptPanel extends PluginPanel
     private final JButton sendButton;
     private final JLabel statusLabel;
     private final String PLACEHOLDER = "Ask GnomeGPT anything...";
+    private final Timer prefetchTimer;
 
-    // Streaming state
+    // Wait for a pause in typing before prefetching context
+    private static final int PREFETCH_DEBOUNCE_MS = 400;
+
+    // Streaming state (EDT only). The owner is the request the bubble belongs to, so
+    // late callbacks from a stopped or superseded request can't write into a newer bubble.
     private JTextPane streamingPane;
     private JPanel streamingBubble;
+    private Object streamOwner;
 
     // === RuneScape Color Palette ===
     // Chat background: dark brown stone
@@ -166,6 +174,28 @@ public class GnomeGptPanel extends PluginPanel
             }
         });
 
+        prefetchTimer = new Timer(PREFETCH_DEBOUNCE_MS, e ->
+        {
+            String text = inputField.getText().trim();
+            if (!text.isEmpty() && !text.equals(PLACEHOLDER))
+            {
+                plugin.prefetch(text);
+            }
+        });
+        prefetchTimer.setRepeats(false);
+
+        inputField.getDocument().addDocumentListener(new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent e) { prefetchTimer.restart(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { prefetchTimer.restart(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {}
+        });
+
         inputField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "send");
         inputField.getActionMap().put("send", new AbstractAction()
         {
@@ -182,7 +212,18 @@ public class GnomeGptPanel extends PluginPanel
             new EmptyBorder(3, 8, 3, 8)
         ));
         sendButton.setFont(new Font("SansSerif", Font.BOLD, 11));
-        sendButton.addActionListener(e -> sendMessage());
+        sendButton.addActionListener(e ->
+        {
+            // While an answer is streaming the button doubles as Stop
+            if (streamOwner != null)
+            {
+                plugin.stopActiveRequest();
+            }
+            else
+            {
+                sendMessage();
+            }
+        });
 
         inputPanel.add(inputField, BorderLayout.CENTER);
         inputPanel.add(sendButton, BorderLayout.EAST);
@@ -205,6 +246,7 @@ public class GnomeGptPanel extends PluginPanel
         if (!text.isEmpty() && !text.equals(PLACEHOLDER))
         {
             inputField.setText("");
+            prefetchTimer.stop();
             inputField.setForeground(RS_YELLOW);
             plugin.sendMessage(text);
         }
@@ -232,10 +274,16 @@ public class GnomeGptPanel extends PluginPanel
 
     // === Streaming ===
 
-    public void startStreamingBubble()
+    /**
+     * Start a "thinking..." bubble for a request. Only calls made with the same owner
+     * can append to or finalize it.
+     */
+    public void startStreamingBubble(Object owner)
     {
         SwingUtilities.invokeLater(() ->
         {
+            streamOwner = owner;
+            applyLoading(true);
             streamingBubble = createBubble(false);
 
             // Name label
@@ -260,11 +308,11 @@ public class GnomeGptPanel extends PluginPanel
         });
     }
 
-    public void appendStreamToken(String token)
+    public void appendStreamToken(Object owner, String token)
     {
         SwingUtilities.invokeLater(() ->
         {
-            if (streamingPane == null) return;
+            if (owner != streamOwner || streamingPane == null) return;
             StyledDocument doc = streamingPane.getStyledDocument();
 
             try
@@ -289,36 +337,98 @@ public class GnomeGptPanel extends PluginPanel
         });
     }
 
-    public void finalizeStreamBubble(String fullText)
+    public void finalizeStreamBubble(Object owner, String fullText)
     {
         SwingUtilities.invokeLater(() ->
         {
-            if (streamingBubble == null || streamingPane == null) return;
+            if (owner != streamOwner || streamingBubble == null || streamingPane == null) return;
+            replaceStreamingPane(fullText, null);
+        });
+    }
 
-            streamingBubble.remove(streamingPane);
-            JTextPane formatted = createTextPane();
-            appendFormattedText(formatted, fullText, RS_YELLOW);
-            streamingBubble.add(formatted, BorderLayout.CENTER);
+    /**
+     * Freeze the current streaming bubble with whatever has arrived so far.
+     */
+    public void stopStreamingBubble()
+    {
+        SwingUtilities.invokeLater(() ->
+        {
+            if (streamingBubble == null || streamingPane == null) return;
 
-            streamingBubble.revalidate();
-            streamingBubble.repaint();
+            String partial = "";
+            try
+            {
+                StyledDocument doc = streamingPane.getStyledDocument();
+                partial = doc.getText(0, doc.getLength());
+            }
+            catch (BadLocationException e) {}
 
-            streamingPane = null;
-            streamingBubble = null;
-            scrollToBottom();
+            if (partial.equals("thinking..."))
+            {
+                partial = "";
+            }
+            replaceStreamingPane(partial, partial.isEmpty() ? "(stopped)" : " (stopped)");
         });
     }
 
-    public void setLoading(boolean loading)
+    private void replaceStreamingPane(String fullText, String note)
+    {
+        streamingBubble.remove(streamingPane);
+        JTextPane formatted = createTextPane();
+        appendFormattedText(formatted, fullText, RS_YELLOW);
+        if (note != null)
+        {
+            SimpleAttributeSet noteAttrs = new SimpleAttributeSet();
+            StyleConstants.setForeground(noteAttrs, RS_GREY);
+            StyleConstants.setItalic(noteAttrs, true);
+            StyleConstants.setFontSize(noteAttrs, 12);
+            StyledDocument doc = formatted.getStyledDocument();
+            try { doc.insertString(doc.getLength(), note, noteAttrs); }
+            catch (BadLocationException e) {}
+        }
+        streamingBubble.add(formatted, BorderLayout.CENTER);
+
+        streamingBubble.revalidate();
+        streamingBubble.repaint();
+
+        streamingPane = null;
+        streamingBubble = null;
+        streamOwner = null;
+        applyLoading(false);
+        scrollToBottom();
+    }
+
+    /**
+     * Add a small dim debug line under the latest bubble, e.g. per-stage timings.
+     */
+    public void addDebugLine(String text)
     {
         SwingUtilities.invokeLater(() ->
         {
-            inputField.setEnabled(!loading);
-            sendButton.setEnabled(!loading);
-            statusLabel.setText(loading ? "Thinking..." : " ");
+            JLabel label = new JLabel("<html>" + text.replace("&", "&amp;").replace("<", "&lt;") + "</html>");
+            label.setForeground(RS_GREY);
+            label.setFont(new Font("SansSerif", Font.ITALIC, 9));
+            label.setBorder(new EmptyBorder(0, 6, 2, 6));
+            label.setAlignmentX(Component.LEFT_ALIGNMENT);
+            label.setMaximumSize(new Dimension(PluginPanel.PANEL_WIDTH - 8, Integer.MAX_VALUE));
+            chatContainer.add(label);
+            chatContainer.revalidate();
+            scrollToBottom();
         });
     }
 
+    public void setLoading(boolean loading)
+    {
+        SwingUtilities.invokeLater(() -> applyLoading(loading));
+    }
+
+    private void applyLoading(boolean loading)
+    {
+        // The input stays enabled so a new message can supersede the one in flight
+        sendButton.setText(loading ? "Stop" : "Send");
+        statusLabel.setText(loading ? "Thinking..." : " ");
+    }
+
     public void clearMessages()
     {
         SwingUtilities.invokeLater(() ->
@@ -326,6 +436,8 @@ public class GnomeGptPanel extends PluginPanel
             chatContainer.removeAll();
             streamingPane = null;
             streamingBubble = null;
+            streamOwner = null;
+            applyLoading(false);
             addChatLine("GnomeGPT", RS_ORANGE, "Chat cleared.", RS_GREY);
             chatContainer.revalidate();
             chatContainer.repaint();
@@ -5,17 +5,32 @@ import com.gnomegpt.calc.SkillCalculator;
 import com.gnomegpt.chat.ChatHistory;
 import com.gnomegpt.chat.ChatMessage;
 import com.gnomegpt.commands.SlashCommandHandler;
+import com.gnomegpt.context.ChatContext;
+import com.gnomegpt.context.ContextAssembler;
+import com.gnomegpt.context.ContextPacker;
+import com.gnomegpt.context.ContextPrefetcher;
+import com.gnomegpt.context.PackedContext;
+import com.gnomegpt.http.CancellationToken;
+import com.gnomegpt.http.HttpTransport;
 import com.gnomegpt.data.MoneyMakingGuide;
 import com.gnomegpt.ironman.IronmanGuide;
 import com.gnomegpt.llm.*;
-import com.gnomegpt.search.QueryExtractor;
+import com.gnomegpt.perf.PerfStats;
+import com.gnomegpt.perf.RequestTrace;
+import com.gnomegpt.search.Bm25Index;
 import com.gnomegpt.wiki.GePriceClient;
 import com.gnomegpt.wiki.HiscoresClient;
+import com.gnomegpt.wiki.ItemMappingStore;
+import com.gnomegpt.wiki.MemoryCache;
 import com.gnomegpt.wiki.OsrsWikiClient;
+import com.gnomegpt.wiki.PriceHistory;
+import com.gnomegpt.wiki.WikiPageCache;
+import com.gnomegpt.wiki.WikiTitleFilter;
 import net.runelite.api.Client;
 import net.runelite.api.Player;
 import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.GameState;
+import net.runelite.client.RuneLite;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.plugins.Plugin;
@@ -23,17 +38,18 @@ import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
 import net.runelite.client.ui.NavigationButton;
 import net.runelite.client.util.ImageUtil;
+import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @PluginDescriptor(
     name = "GnomeGPT",
@@ -174,6 +190,12 @@ public class GnomeGptPlugin extends Plugin
         "- **Skill Calculator**: Live GE prices and XP calculations for training cost questions\n" +
         "When calculator data is present, use those EXACT numbers — they have live GE prices.";
 
+    // Shared by context assembly and slash commands: enough for the hiscores, money and
+    // calc stages plus a handful of wiki queries at once
+    private static final int LOOKUP_THREADS = 6;
+    // Compressed, so this holds a few hundred pages
+    private static final long WIKI_MEMORY_BYTES = 8L * 1024 * 1024;
+
     @Inject
     private ClientToolbar clientToolbar;
 
@@ -186,33 +208,79 @@ public class GnomeGptPlugin extends Plugin
     @Inject
     private ConfigManager configManager;
 
+    @Inject
+    private OkHttpClient okHttpClient;
+
     private GnomeGptPanel panel;
     private NavigationButton navButton;
 
     private final ChatHistory chatHistory = new ChatHistory();
-    private final OsrsWikiClient wikiClient = new OsrsWikiClient();
-    private final GePriceClient geClient = new GePriceClient();
-    private final HiscoresClient hiscoresClient = new HiscoresClient();
-    private final SkillCalculator skillCalc;
+    private final PerfStats perfStats = new PerfStats();
     private final MoneyMakingGuide moneyGuide = new MoneyMakingGuide();
     private final IronmanGuide ironmanGuide = new IronmanGuide();
-    private final OpenAiProvider openAiProvider = new OpenAiProvider();
-    private final AnthropicProvider anthropicProvider = new AnthropicProvider();
-    private final OllamaProvider ollamaProvider = new OllamaProvider();
+    private HttpTransport transport;
+    private OsrsWikiClient wikiClient;
+    private Bm25Index searchIndex;
+    private GePriceClient geClient;
+    private PriceHistory priceHistory;
+    private HiscoresClient hiscoresClient;
+    private SkillCalculator skillCalc;
+    private OpenAiProvider openAiProvider;
+    private AnthropicProvider anthropicProvider;
+    private OllamaProvider ollamaProvider;
     private SlashCommandHandler commandHandler;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private ExecutorService executor;
+    private ExecutorService lookupExecutor;
+    private Thread titleFilterThread;
+    private ContextPrefetcher prefetcher;
+    private ContextAssembler contextAssembler;
+
+    // The request currently streaming into the panel (EDT only)
+    private CancellationToken activeRequest;
+    private Future<?> activeTask;
 
     // Auto-detected RSN
     private String detectedRsn = null;
 
-    {
-        skillCalc = new SkillCalculator(geClient);
-    }
-
     @Override
     protected void startUp()
     {
-        commandHandler = new SlashCommandHandler(wikiClient, geClient, skillCalc, ironmanGuide);
+        // All HTTP goes through RuneLite's client, so we share its connection pool and dispatcher
+        transport = new HttpTransport(okHttpClient,
+            RuneLite.RUNELITE_DIR.toPath().resolve("gnomegpt").resolve("http-cache"),
+            config.useHttp2(), perfStats);
+        OkHttpClient apiClient = transport.apiClient();
+        WikiPageCache pageCache = new WikiPageCache(
+            RuneLite.RUNELITE_DIR.toPath().resolve("gnomegpt").resolve("wiki-pages"),
+            config.wikiCacheMb() * 1024L * 1024L);
+        MemoryCache wikiMemory = new MemoryCache("wiki memory", WIKI_MEMORY_BYTES, true);
+        perfStats.registerCache("wiki", wikiMemory::stats);
+        searchIndex = new Bm25Index(RuneLite.RUNELITE_DIR.toPath().resolve("gnomegpt").resolve("search-index.bin"));
+        perfStats.registerCache("index", () -> "search index: " + searchIndex.size() + " pages");
+        WikiTitleFilter titleFilter = new WikiTitleFilter(apiClient,
+            RuneLite.RUNELITE_DIR.toPath().resolve("gnomegpt").resolve("wiki-titles.bloom"));
+        wikiClient = new OsrsWikiClient(apiClient, pageCache, wikiMemory, searchIndex, titleFilter, perfStats);
+        priceHistory = new PriceHistory(RuneLite.RUNELITE_DIR.toPath().resolve("gnomegpt").resolve("price-history.bin"));
+        geClient = new GePriceClient(apiClient, new ItemMappingStore(apiClient,
+            RuneLite.RUNELITE_DIR.toPath().resolve("gnomegpt").resolve("item-mapping.bin")), priceHistory);
+        hiscoresClient = new HiscoresClient(apiClient, perfStats);
+        skillCalc = new SkillCalculator(geClient, perfStats);
+        openAiProvider = new OpenAiProvider(transport.llmClient(30, 90));
+        anthropicProvider = new AnthropicProvider(transport.llmClient(30, 90));
+        ollamaProvider = new OllamaProvider(transport.llmClient(10, 120));
+
+        executor = Executors.newSingleThreadExecutor();
+        lookupExecutor = Executors.newFixedThreadPool(LOOKUP_THREADS, r ->
+        {
+            Thread t = new Thread(r, "gnomegpt-lookup");
+            t.setDaemon(true);
+            return t;
+        });
+        prefetcher = new ContextPrefetcher(wikiClient, hiscoresClient, geClient);
+        contextAssembler = new ContextAssembler(wikiClient, hiscoresClient, moneyGuide, skillCalc, geClient,
+            prefetcher, lookupExecutor);
+        commandHandler = new SlashCommandHandler(wikiClient, geClient, skillCalc, ironmanGuide,
+            perfStats, lookupExecutor);
         panel = new GnomeGptPanel(this);
 
         final BufferedImage icon = ImageUtil.loadImageResource(getClass(), "/gnome_child.png");
@@ -225,6 +293,15 @@ public class GnomeGptPlugin extends Plugin
             .build();
 
         clientToolbar.addNavigation(navButton);
+
+        // Have the TLS session ready by the time the first question is asked
+        transport.prewarm(getProvider().getEndpoint());
+        // Loads the saved title filter, rebuilding it weekly; kept off the lookup threads since a rebuild takes minutes
+        titleFilterThread = new Thread(titleFilter::refreshIfStale, "gnomegpt-titles");
+        titleFilterThread.setDaemon(true);
+        titleFilterThread.setPriority(Thread.MIN_PRIORITY);
+        titleFilterThread.start();
+        lookupExecutor.submit(geClient::loadMapping);
         log.info("GnomeGPT started");
     }
 
@@ -233,6 +310,13 @@ public class GnomeGptPlugin extends Plugin
     {
         clientToolbar.removeNavigation(navButton);
         executor.shutdownNow();
+        lookupExecutor.shutdownNow();
+        titleFilterThread.interrupt();
+        prefetcher.shutdown();
+        geClient.shutdown();
+        transport.close();
+        searchIndex.save();
+        priceHistory.save();
         log.info("GnomeGPT stopped");
     }
 
@@ -287,11 +371,15 @@ public class GnomeGptPlugin extends Plugin
 
         String trimmed = userMessage.trim();
 
+        // A new message supersedes whatever is still in flight
+        stopActiveRequest();
+        CancellationToken token = new CancellationToken();
+
         // Slash commands
-        String commandResult = commandHandler.handle(trimmed);
+        CompletableFuture<String> commandResult = commandHandler.handle(trimmed, token);
         if (commandResult != null)
         {
-            if ("__CLEAR__".equals(commandResult))
+            if ("__CLEAR__".equals(commandResult.getNow(null)))
             {
                 clearChat();
                 return;
@@ -299,8 +387,22 @@ public class GnomeGptPlugin extends Plugin
 
             ChatMessage userMsg = new ChatMessage(ChatMessage.Role.USER, trimmed);
             panel.addMessage(userMsg);
-            ChatMessage resultMsg = new ChatMessage(ChatMessage.Role.ASSISTANT, commandResult);
-            panel.addMessage(resultMsg);
+
+            if (commandResult.isDone())
+            {
+                panel.addMessage(new ChatMessage(ChatMessage.Role.ASSISTANT, commandResult.join()));
+                return;
+            }
+
+            // Remote lookups finish off the EDT and land in a streaming bubble
+            activeRequest = token;
+            panel.startStreamingBubble(token);
+            commandResult.whenComplete((result, error) ->
+            {
+                if (token.isCancelled()) return;
+                panel.finalizeStreamBubble(token,
+                    error == null ? result : "Something went wrong: " + error.getMessage());
+            });
             return;
         }
 
@@ -317,195 +419,156 @@ public class GnomeGptPlugin extends Plugin
             return;
         }
 
-        panel.setLoading(true);
-        panel.startStreamingBubble();
+        activeRequest = token;
+        panel.startStreamingBubble(token);
 
-        executor.submit(() ->
+        final String rsn = getEffectiveRsn();
+        final boolean wikiLookup = config.wikiLookup();
+        final int maxWikiResults = config.maxWikiResults();
+        final int contextBudgetMs = config.contextBudgetMs();
+        final boolean showTimings = config.showTimings();
+        final RequestTrace trace = new RequestTrace(perfStats);
+
+        activeTask = executor.submit(() -> token.run(() ->
         {
             try
             {
-                String lower = trimmed.toLowerCase();
+                // 1-4. Wiki, hiscores, money and calc context, gathered in parallel
+                ChatContext context = contextAssembler.assemble(trimmed, rsn, wikiLookup, maxWikiResults,
+                    contextBudgetMs, token, trace);
+                if (token.isCancelled()) return;
+
+                // 5. Fit the context to the model's budget, most relevant first
+                long packStart = System.nanoTime();
+                PackedContext packed = ContextPacker.pack(trimmed, context,
+                    ContextPacker.budgetFor(config.llmProvider(), config.model()));
+                trace.mark("context.pack", packStart);
+                trace.contextPacked(packed.getTokens(), packed.getBudget(), packed.getDropped());
+
+                // 6. Build conversation
+                long promptStart = System.nanoTime();
+                List<ChatMessage> conversation = buildConversation(packed);
+                trace.mark("prompt.build", promptStart);
+
+                // 7. Stream the response
+                LlmProvider provider = getProvider();
+                final StringBuilder fullResponse = new StringBuilder();
+                final long llmStart = System.nanoTime();
 
-                // 1. Smart wiki search
-                String wikiContext = "";
-                if (config.wikiLookup())
+                provider.chatStream(conversation, config.model(), new StreamCallback()
                 {
-                    try
-                    {
-                        List<String> queries = QueryExtractor.extractMultiple(trimmed);
-                        StringBuilder wikiBuilder = new StringBuilder();
-
-                        // For gear/setup questions, try to fetch strategy pages directly
-                        if (lower.contains("gear") || lower.contains("setup") ||
-                            lower.contains("equipment") || lower.contains("bis") ||
-                            lower.contains("loadout") || lower.contains("what to wear"))
-                        {
-                            String primaryTerm = QueryExtractor.extract(trimmed);
-                            try
-                            {
-                                String stratPage = wikiClient.fetchStrategyPage(primaryTerm);
-                                if (!stratPage.isEmpty())
-                                {
-                                    wikiBuilder.append(stratPage);
-                                }
-                            }
-                            catch (Exception e)
-                            {
-                                log.debug("Strategy page fetch failed for: {}", primaryTerm);
-                            }
-                        }
-
-                        for (String query : queries)
-                        {
-                            String result = wikiClient.searchAndFetch(query,
-                                queries.size() > 1 ? 2 : config.maxWikiResults());
-                            if (!result.isEmpty())
-                            {
-                                wikiBuilder.append(result);
-                            }
-                        }
-                        wikiContext = wikiBuilder.toString();
+                    private long firstTokenAt = 0;
+                    private int chunks = 0;
+                    private int outputTokens = -1;
 
-                        // Truncate if too long to avoid token limits
-                        if (wikiContext.length() > 12000)
-                        {
-                            wikiContext = wikiContext.substring(0, 12000) + "\n...[truncated]";
-                        }
-                    }
-                    catch (Exception e)
-                    {
-                        log.warn("Wiki lookup failed", e);
-                    }
-                }
-
-                // 2. Money making context
-                String moneyContext = "";
-                try
-                {
-                    if (lower.contains("money") || lower.contains("gp/h") ||
-                        lower.contains("gp/hr") || lower.contains("profit") ||
-                        lower.contains("earning") || lower.contains("gold per"))
-                    {
-                        Map<String, Integer> stats = new HashMap<>();
-                        try
-                        {
-                            if (getEffectiveRsn() != null)
-                                stats = parsePlayerStats(hiscoresClient.getPlayerStats(getEffectiveRsn()));
-                        } catch (Exception e) { log.debug("Stats fetch failed for money context"); }
-                        moneyContext = moneyGuide.getTopMethods(stats, 15);
-                    }
-                    else if (lower.contains("boss") || lower.contains("slayer"))
+                    @Override
+                    public void onToken(String text)
                     {
-                        Map<String, Integer> stats = new HashMap<>();
-                        try
+                        if (chunks++ == 0)
                         {
-                            if (getEffectiveRsn() != null)
-                                stats = parsePlayerStats(hiscoresClient.getPlayerStats(getEffectiveRsn()));
-                        } catch (Exception e) { log.debug("Stats fetch failed for money context"); }
-                        moneyContext = moneyGuide.getMethodsByCategory(
-                            lower.contains("boss") ? "boss" : "slayer", stats, 10);
-                    }
-                } catch (Exception e) { log.warn("Money context error", e); }
-
-                // 3. Skill calculator context
-                String calcContext = "";
-                if (lower.contains("cost") || lower.contains("how much") ||
-                    lower.contains("99") || lower.contains("train") ||
-                    lower.contains("level") || lower.contains("xp"))
-                {
-                    calcContext = getCalcContext(lower, getEffectiveRsn());
-                }
-
-                // 4. Player stats
-                String playerContext = "";
-                String rsn = getEffectiveRsn();
-                if (rsn != null)
-                {
-                    try
-                    {
-                        playerContext = hiscoresClient.getPlayerStats(rsn);
-                    }
-                    catch (Exception e)
-                    {
-                        log.warn("Hiscores lookup failed for: {}", rsn, e);
+                            firstTokenAt = System.nanoTime();
+                            trace.mark("llm.ttft", llmStart);
+                        }
+                        fullResponse.append(text);
+                        panel.appendStreamToken(token, text);
                     }
-                }
 
-                // 5. Build conversation
-                List<ChatMessage> conversation = buildConversation(wikiContext, playerContext, calcContext, moneyContext);
-
-                // 6. Stream the response
-                LlmProvider provider = getProvider();
-                final StringBuilder fullResponse = new StringBuilder();
-
-                provider.chatStream(conversation, config.model(), new StreamCallback()
-                {
                     @Override
-                    public void onToken(String token)
+                    public void onUsage(TokenUsage usage)
                     {
-                        fullResponse.append(token);
-                        panel.appendStreamToken(token);
+                        outputTokens = usage.getOutputTokens();
+                        trace.promptTokens(usage.getInputTokens(), usage.getCachedInputTokens(), usage.getCacheWriteTokens());
                     }
 
                     @Override
                     public void onComplete(String response)
                     {
+                        if (token.isCancelled()) return;
+
                         // Re-render with full formatting
-                        panel.finalizeStreamBubble(response);
+                        panel.finalizeStreamBubble(token, response);
 
                         ChatMessage assistantMsg = new ChatMessage(ChatMessage.Role.ASSISTANT, response);
                         chatHistory.addMessage(assistantMsg);
-                        panel.setLoading(false);
+
+                        if (chunks > 0)
+                        {
+                            // Prefer the provider's token count; stream chunks are roughly one token each
+                            long streamMs = trace.mark("llm.stream", firstTokenAt);
+                            int streamed = outputTokens > 0 ? outputTokens - 1 : chunks - 1;
+                            if (streamed > 0 && streamMs > 0)
+                            {
+                                trace.tokensPerSecond(streamed * 1000.0 / streamMs);
+                            }
+                        }
+                        trace.finish();
+                        if (showTimings)
+                        {
+                            panel.addDebugLine(trace.format());
+                        }
                     }
 
                     @Override
                     public void onError(String error)
                     {
-                        panel.finalizeStreamBubble("Error: " + error);
-                        panel.setLoading(false);
+                        if (token.isCancelled()) return;
+                        panel.finalizeStreamBubble(token, "Error: " + error);
                     }
                 });
             }
             catch (Exception e)
             {
+                if (token.isCancelled()) return;
                 log.error("Error getting AI response", e);
-                panel.finalizeStreamBubble("Something went wrong: " + e.getMessage());
-                panel.setLoading(false);
+                panel.finalizeStreamBubble(token, "Something went wrong: " + e.getMessage());
             }
-        });
+        }));
+    }
+
+    /**
+     * Called (debounced) as the player types, to warm context before the message is sent.
+     */
+    public void prefetch(String partialInput)
+    {
+        if (!config.prefetchWhileTyping() || partialInput.startsWith("/"))
+        {
+            return;
+        }
+        prefetcher.prefetch(partialInput, getEffectiveRsn(), config.wikiLookup(), config.maxWikiResults());
     }
 
-    private Map<String, Integer> parsePlayerStats(String statsString)
+    /**
+     * Abort the request in flight, if any: cancel its HTTP calls and LLM stream, drop it
+     * from the executor queue if it hasn't started, and freeze its bubble as stopped.
+     */
+    public void stopActiveRequest()
     {
-        Map<String, Integer> stats = new HashMap<>();
-        if (statsString == null || statsString.isEmpty()) return stats;
+        if (activeRequest == null)
+        {
+            return;
+        }
 
-        // Format: "Skills: Attack: 70, Defence: 65, ..."
-        String[] parts = statsString.split(",");
-        for (String part : parts)
+        activeRequest.cancel();
+        activeRequest = null;
+        if (activeTask != null)
         {
-            String trimmed = part.trim();
-            int colonIdx = trimmed.lastIndexOf(": ");
-            if (colonIdx > 0)
-            {
-                String skill = trimmed.substring(0, colonIdx).trim();
-                // Remove "Skills: " prefix if present
-                if (skill.startsWith("Skills: ")) skill = skill.substring(8);
-                try
-                {
-                    int level = Integer.parseInt(trimmed.substring(colonIdx + 2).trim());
-                    stats.put(skill.toLowerCase(), level);
-                }
-                catch (NumberFormatException e) {}
-            }
+            activeTask.cancel(false);
+            activeTask = null;
         }
-        return stats;
+        panel.stopStreamingBubble();
     }
 
-    private List<ChatMessage> buildConversation(String wikiContext, String playerContext, String calcContext, String moneyContext)
+    private List<ChatMessage> buildConversation(PackedContext context)
     {
+        String wikiContext = context.getWikiContext();
+        String playerContext = context.getPlayerContext();
+        String calcContext = context.getCalcContext();
+        String moneyContext = context.getMoneyContext();
+        String priceContext = context.getPriceContext();
+
         List<ChatMessage> conversation = new ArrayList<>();
 
+        // Stable block: the rules and personality, identical on every turn so providers can cache it
         String systemPrompt = config.systemPrompt();
         if (systemPrompt == null || systemPrompt.trim().isEmpty())
         {
@@ -532,37 +595,47 @@ public class GnomeGptPlugin extends Plugin
             }
         }
 
+        conversation.add(new ChatMessage(ChatMessage.Role.SYSTEM, systemPrompt, true));
+
+        // Volatile block: this question's context, which changes every turn
+        String contextBlock = "";
         if (!playerContext.isEmpty())
         {
-            systemPrompt += "\n\n--- Player Stats ---\n" + playerContext +
+            contextBlock += "--- Player Stats ---\n" + playerContext +
                 "\nUse these stats to tailor your advice (e.g. don't suggest methods " +
                 "requiring 90 Slayer if they're level 50).";
         }
 
         if (!calcContext.isEmpty())
         {
-            systemPrompt += "\n\n--- Skill Calculator Data (live GE prices) ---\n" + calcContext +
+            contextBlock += "\n\n--- Skill Calculator Data (live GE prices) ---\n" + calcContext +
                 "\nUse this data to give accurate cost estimates. These prices are live from the GE.";
         }
 
+        if (!priceContext.isEmpty())
+        {
+            contextBlock += "\n\n--- GE Price Data ---\n" + priceContext +
+                "\nLive from the GE. Changes, volume and volatility come from hourly averages.";
+        }
+
         if (moneyContext != null && !moneyContext.isEmpty())
         {
-            systemPrompt += "\n\n--- Money Making Guide Data ---\n" + moneyContext +
+            contextBlock += "\n\n--- Money Making Guide Data ---\n" + moneyContext +
                 "\nThese are real methods from the OSRS Wiki money making guide. " +
                 "Use these exact GP/hr rates. ✅ means the player can do it, 🔒 means they need higher levels.";
         }
 
         if (!wikiContext.isEmpty())
         {
-            systemPrompt += "\n\n--- OSRS Wiki Context ---\n" + wikiContext;
+            contextBlock += "\n\n--- OSRS Wiki Context ---\n" + wikiContext;
         }
         else
         {
-            systemPrompt += "\n\nNo wiki context was found for this query. " +
+            contextBlock += "\n\nNo wiki context was found for this query. " +
                 "Be extra careful not to make things up. If unsure, say so.";
         }
 
-        conversation.add(new ChatMessage(ChatMessage.Role.SYSTEM, systemPrompt));
+        conversation.add(new ChatMessage(ChatMessage.Role.SYSTEM, contextBlock.trim()));
 
         for (ChatMessage msg : chatHistory.getMessages())
         {
@@ -575,59 +648,6 @@ public class GnomeGptPlugin extends Plugin
         return conversation;
     }
 
-    private String getCalcContext(String query, String rsn)
-    {
-        StringBuilder context = new StringBuilder();
-
-        for (String skill : SkillCalculator.supportedSkills())
-        {
-            if (query.contains(skill))
-            {
-                int currentLevel = 1;
-                if (rsn != null && !rsn.isEmpty())
-                {
-                    try
-                    {
-                        String stats = hiscoresClient.getPlayerStats(rsn);
-                        String skillCap = skill.substring(0, 1).toUpperCase() + skill.substring(1);
-                        int idx = stats.indexOf(skillCap + ": ");
-                        if (idx >= 0)
-                        {
-                            String after = stats.substring(idx + skillCap.length() + 2);
-                            String levelStr = after.split("[,\\s]")[0];
-                            currentLevel = Integer.parseInt(levelStr);
-                        }
-                    }
-                    catch (Exception e)
-                    {
-                        log.debug("Could not get {} level from hiscores", skill);
-                    }
-                }
-
-                int targetLevel = 99;
-                java.util.regex.Matcher m = java.util.regex.Pattern.compile(
-                    "(?:to|level|lvl)\\s*(\\d{1,2})"
-                ).matcher(query);
-                if (m.find())
-                {
-                    int parsed = Integer.parseInt(m.group(1));
-                    if (parsed > currentLevel && parsed <= 99)
-                    {
-                        targetLevel = parsed;
-                    }
-                }
-
-                if (currentLevel < targetLevel)
-                {
-                    context.append(skillCalc.calculate(skill, currentLevel, targetLevel));
-                    context.append("\n");
-                }
-            }
-        }
-
-        return context.toString();
-    }
-
     private LlmProvider getProvider()
     {
         switch (config.llmProvider())
@@ -647,6 +667,8 @@ public class GnomeGptPlugin extends Plugin
 
     public void clearChat()
     {
+        stopActiveRequest();
+        prefetcher.cancelAll();
         chatHistory.clear();
         panel.clearMessages();
     }
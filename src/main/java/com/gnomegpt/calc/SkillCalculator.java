@@ -1,6 +1,8 @@
 package com.gnomegpt.calc;
 
+import com.gnomegpt.perf.PerfStats;
 import com.gnomegpt.wiki.GePriceClient;
+import com.gnomegpt.wiki.PriceQuote;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -153,10 +155,12 @@ public class SkillCalculator
     }
 
     private final GePriceClient geClient;
+    private final PerfStats perf;
 
-    public SkillCalculator(GePriceClient geClient)
+    public SkillCalculator(GePriceClient geClient, PerfStats perf)
     {
         this.geClient = geClient;
+        this.perf = perf;
     }
 
     /**
@@ -210,20 +214,17 @@ public class SkillCalculator
             // Try to get GE price
             if (method.itemName != null)
             {
+                long start = System.nanoTime();
                 try
                 {
-                    String priceInfo = geClient.lookup(method.itemName);
-                    // Extract buy price from the response
-                    String buyPrice = extractBuyPrice(priceInfo);
-                    if (buyPrice != null)
+                    PriceQuote quote = geClient.quote(method.itemName);
+                    perf.recordSince("calc.ge", start);
+                    long pricePerItem = quote != null ? quote.getBuyPrice() : -1;
+                    if (pricePerItem > 0)
                     {
-                        long pricePerItem = parsePriceValue(buyPrice);
-                        if (pricePerItem > 0)
-                        {
-                            long totalCost = pricePerItem * itemsNeeded;
-                            sb.append("  Cost: ").append(formatGp(totalCost)).append(" gp");
-                            sb.append(" (").append(formatGp(pricePerItem)).append(" ea)\n");
-                        }
+                        long totalCost = pricePerItem * itemsNeeded;
+                        sb.append("  Cost: ").append(formatGp(totalCost)).append(" gp");
+                        sb.append(" (").append(formatGp(pricePerItem)).append(" ea)\n");
                     }
                 }
                 catch (Exception e)
@@ -245,34 +246,6 @@ public class SkillCalculator
         return calculate(skill, currentLevel, targetLevel);
     }
 
-    private String extractBuyPrice(String priceInfo)
-    {
-        for (String line : priceInfo.split("\n"))
-        {
-            if (line.trim().startsWith("Buy:"))
-            {
-                return line.trim().replace("Buy:", "").replace("gp", "").trim();
-            }
-        }
-        return null;
-    }
-
-    private long parsePriceValue(String value)
-    {
-        try
-        {
-            value = value.trim().replace(",", "");
-            if (value.endsWith("B")) return (long) (Double.parseDouble(value.replace("B", "")) * 1_000_000_000);
-            if (value.endsWith("M")) return (long) (Double.parseDouble(value.replace("M", "")) * 1_000_000);
-            if (value.endsWith("K")) return (long) (Double.parseDouble(value.replace("K", "")) * 1_000);
-            return Long.parseLong(value);
-        }
-        catch (NumberFormatException e)
-        {
-            return 0;
-        }
-    }
-
     private String formatGp(long amount)
     {
         if (amount >= 1_000_000_000) return String.format("%.2fB", amount / 1_000_000_000.0);
@@ -12,12 +12,23 @@ public class ChatMessage
     private final Role role;
     private final String content;
     private final long timestamp;
+    private final boolean cacheable;
 
     public ChatMessage(Role role, String content)
+    {
+        this(role, content, false);
+    }
+
+    /**
+     * @param cacheable true if the content is the same on every turn, so providers may cache
+     *                  the prompt up to and including this message
+     */
+    public ChatMessage(Role role, String content, boolean cacheable)
     {
         this.role = role;
         this.content = content;
         this.timestamp = System.currentTimeMillis();
+        this.cacheable = cacheable;
     }
 
     public Role getRole()
@@ -35,6 +46,11 @@ public class ChatMessage
         return timestamp;
     }
 
+    public boolean isCacheable()
+    {
+        return cacheable;
+    }
+
     public String getRoleString()
     {
         switch (role)
@@ -1,13 +1,21 @@
 package com.gnomegpt.commands;
 
 import com.gnomegpt.calc.SkillCalculator;
+import com.gnomegpt.http.CancellationToken;
 import com.gnomegpt.ironman.IronmanGuide;
+import com.gnomegpt.perf.PerfStats;
 import com.gnomegpt.wiki.OsrsWikiClient;
 import com.gnomegpt.wiki.GePriceClient;
+import com.gnomegpt.wiki.PriceFormat;
+import com.gnomegpt.wiki.PriceQuote;
+import com.gnomegpt.wiki.PriceTrend;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public class SlashCommandHandler
 {
@@ -17,17 +25,30 @@ public class SlashCommandHandler
     private final GePriceClient geClient;
     private final SkillCalculator skillCalc;
     private final IronmanGuide ironmanGuide;
+    private final PerfStats perf;
+    private final Executor executor;
 
     public SlashCommandHandler(OsrsWikiClient wikiClient, GePriceClient geClient,
-                               SkillCalculator skillCalc, IronmanGuide ironmanGuide)
+                               SkillCalculator skillCalc, IronmanGuide ironmanGuide,
+                               PerfStats perf, Executor executor)
     {
         this.wikiClient = wikiClient;
         this.geClient = geClient;
         this.skillCalc = skillCalc;
         this.ironmanGuide = ironmanGuide;
+        this.perf = perf;
+        this.executor = executor;
     }
 
-    public String handle(String message)
+    /**
+     * Handle a slash command. Commands that only touch local data complete immediately;
+     * commands that hit the wiki or GE APIs run on the executor so the caller (usually
+     * the Swing EDT) never blocks on the network.
+     *
+     * @param token cancels the command's remote lookups if it is superseded
+     * @return the command's result, or null if the message is not a command
+     */
+    public CompletableFuture<String> handle(String message, CancellationToken token)
     {
         if (message == null || !message.startsWith("/"))
         {
@@ -41,30 +62,52 @@ public class SlashCommandHandler
         switch (command)
         {
             case "/help":
-                return getHelpText();
+                return CompletableFuture.completedFuture(getHelpText());
             case "/price":
-                return handlePrice(args);
+                return handlePrice(args, token);
             case "/wiki":
-                return handleWiki(args);
+                return handleWiki(args, token);
             case "/item":
-                return handleWiki(args);
+                return handleWiki(args, token);
             case "/quest":
-                return handleWiki(args + " quest");
+                return handleWiki(args + " quest", token);
             case "/monster":
-                return handleWiki(args);
+                return handleWiki(args, token);
             case "/calc":
-                return handleCalc(args);
+                return handleCalc(args, token);
             case "/gear":
-                return handleGear(args);
+                return handleGear(args, token);
             case "/iron":
-                return handleIron(args);
+                return CompletableFuture.completedFuture(handleIron(args));
+            case "/perf":
+                return CompletableFuture.completedFuture(handlePerf(args));
             case "/clear":
-                return "__CLEAR__";
+                return CompletableFuture.completedFuture("__CLEAR__");
             default:
-                return "Unknown command: " + command + "\nType /help for available commands.";
+                return CompletableFuture.completedFuture(
+                    "Unknown command: " + command + "\nType /help for available commands.");
         }
     }
 
+    /**
+     * Run a remote lookup on the executor. A lookup cancelled before it starts yields null,
+     * which the caller discards along with the rest of the superseded command.
+     */
+    private <T> CompletableFuture<T> async(RemoteLookup<T> lookup, CancellationToken token)
+    {
+        return CompletableFuture.supplyAsync(token.wrap(() ->
+        {
+            try
+            {
+                return lookup.get();
+            }
+            catch (Exception e)
+            {
+                throw new CompletionException(e);
+            }
+        }, null), executor);
+    }
+
     private String getHelpText()
     {
         return "\uD83E\uDDD9 **GnomeGPT Commands:**\n\n" +
@@ -75,132 +118,148 @@ public class SlashCommandHandler
             "• /gear <item> — Item stats + GE price\n" +
             "• /calc <skill> <current> <target> — Training cost calc\n" +
             "• /iron — Ironman guide tracker (BRUHsailer)\n" +
+            "• /perf — Where the time goes in my answers\n" +
             "• /clear — Clear chat history\n" +
             "• /help — This message\n\n" +
             "Supported /calc skills: " + String.join(", ", SkillCalculator.supportedSkills()) +
             "\nOr just type normally and I'll help you out!";
     }
 
-    private String handlePrice(String itemName)
+    private CompletableFuture<String> handlePrice(String itemName, CancellationToken token)
     {
         if (itemName.isEmpty())
         {
-            return "Usage: /price <item name>\nExample: /price Dragon bones";
+            return CompletableFuture.completedFuture("Usage: /price <item name>\nExample: /price Dragon bones");
         }
 
-        try
-        {
-            return geClient.lookup(itemName);
-        }
-        catch (Exception e)
-        {
-            log.warn("GE price lookup failed for: {}", itemName, e);
-            return "Couldn't look up price for '" + itemName + "'. Try again or check the wiki.";
-        }
+        return async(() -> priceReport(itemName), token)
+            .exceptionally(e ->
+            {
+                log.warn("GE price lookup failed for: {}", itemName, e);
+                return "Couldn't look up price for '" + itemName + "'. Try again or check the wiki.";
+            });
     }
 
-    private String handleWiki(String query)
+    private String priceReport(String itemName) throws Exception
+    {
+        PriceQuote quote = geClient.quote(itemName);
+        PriceTrend trend = quote != null && quote.hasPrice() ? geClient.trend(quote.getItemId()) : null;
+        return PriceFormat.describe(itemName, quote, trend);
+    }
+
+    private CompletableFuture<String> handleWiki(String query, CancellationToken token)
     {
         if (query.isEmpty())
         {
-            return "Usage: /wiki <topic>\nExample: /wiki Abyssal whip";
+            return CompletableFuture.completedFuture("Usage: /wiki <topic>\nExample: /wiki Abyssal whip");
         }
 
-        try
-        {
-            List<String> titles = wikiClient.search(query, 1);
-            if (titles.isEmpty())
+        return async(() -> wikiSummary(query), token)
+            .exceptionally(e ->
             {
-                return "No wiki results for '" + query + "'.";
-            }
+                log.warn("Wiki lookup failed for: {}", query, e);
+                return "Wiki search failed for '" + query + "'.";
+            });
+    }
 
-            String title = titles.get(0);
-            String content = wikiClient.getPageContent(title);
-            String url = "https://oldschool.runescape.wiki/w/" + title.replace(" ", "_");
+    private String wikiSummary(String query) throws Exception
+    {
+        List<String> titles = wikiClient.search(query, 1);
+        if (titles.isEmpty())
+        {
+            return "No wiki results for '" + query + "'.";
+        }
 
-            if (content.isEmpty())
-            {
-                return title + "\n" + url + "\n\nNo content available.";
-            }
+        String title = titles.get(0);
+        String content = wikiClient.getPageContent(title);
+        String url = "https://oldschool.runescape.wiki/w/" + title.replace(" ", "_");
 
-            if (content.length() > 1500)
-            {
-                content = content.substring(0, 1500) + "...\n\nRead more: " + url;
-            }
-            else
-            {
-                content += "\n\n" + url;
-            }
+        if (content.isEmpty())
+        {
+            return title + "\n" + url + "\n\nNo content available.";
+        }
 
-            return "=== " + title + " ===\n" + content;
+        if (content.length() > 1500)
+        {
+            content = content.substring(0, 1500) + "...\n\nRead more: " + url;
         }
-        catch (Exception e)
+        else
         {
-            log.warn("Wiki lookup failed for: {}", query, e);
-            return "Wiki search failed for '" + query + "'.";
+            content += "\n\n" + url;
         }
+
+        return "=== " + title + " ===\n" + content;
     }
 
-    private String handleGear(String itemName)
+    private CompletableFuture<String> handleGear(String itemName, CancellationToken token)
     {
         if (itemName.isEmpty())
         {
-            return "Usage: /gear <item name>\nExample: /gear Abyssal whip";
+            return CompletableFuture.completedFuture("Usage: /gear <item name>\nExample: /gear Abyssal whip");
         }
 
-        try
-        {
-            // Get wiki info
-            List<String> titles = wikiClient.search(itemName, 1);
-            String wikiInfo = "";
-            String url = "";
-            if (!titles.isEmpty())
+        // Wiki info and GE price are independent, so look them up side by side
+        CompletableFuture<String[]> wikiFuture = async(() -> gearWikiInfo(itemName), token);
+        CompletableFuture<PriceQuote> priceFuture = async(() -> geClient.quote(itemName), token)
+            .exceptionally(e -> null);
+
+        return wikiFuture.thenCombine(priceFuture, (wiki, quote) ->
             {
-                String title = titles.get(0);
-                wikiInfo = wikiClient.getPageContent(title);
-                url = "https://oldschool.runescape.wiki/w/" + title.replace(" ", "_");
-                if (wikiInfo.length() > 800)
+                if (wiki == null)
                 {
-                    wikiInfo = wikiInfo.substring(0, 800) + "...";
+                    // Cancelled before the wiki lookup started
+                    return null;
                 }
-            }
 
-            // Get GE price
-            String priceInfo = "";
-            try
-            {
-                priceInfo = geClient.lookup(itemName);
-            }
-            catch (Exception e)
-            {
-                priceInfo = "Price unavailable";
-            }
+                String wikiInfo = wiki[0];
+                String url = wiki[1];
 
-            StringBuilder result = new StringBuilder();
-            result.append("⚔️ **").append(itemName).append("**\n\n");
+                StringBuilder result = new StringBuilder();
+                result.append("⚔️ **").append(itemName).append("**\n\n");
 
-            if (!priceInfo.isEmpty() && !priceInfo.startsWith("Couldn't"))
-            {
-                result.append(priceInfo).append("\n\n");
-            }
+                if (quote != null && quote.hasPrice())
+                {
+                    result.append(PriceFormat.describe(itemName, quote, null)).append("\n\n");
+                }
 
-            if (!wikiInfo.isEmpty())
-            {
-                result.append(wikiInfo).append("\n");
-            }
+                if (!wikiInfo.isEmpty())
+                {
+                    result.append(wikiInfo).append("\n");
+                }
+
+                if (!url.isEmpty())
+                {
+                    result.append("\n").append(url);
+                }
 
-            if (!url.isEmpty())
+                return result.toString();
+            })
+            .exceptionally(e ->
             {
-                result.append("\n").append(url);
-            }
+                log.warn("Gear lookup failed for: {}", itemName, e);
+                return "Couldn't look up '" + itemName + "'.";
+            });
+    }
 
-            return result.toString();
-        }
-        catch (Exception e)
+    /**
+     * @return the trimmed wiki summary and page URL for an item, either of which may be empty
+     */
+    private String[] gearWikiInfo(String itemName) throws Exception
+    {
+        List<String> titles = wikiClient.search(itemName, 1);
+        String wikiInfo = "";
+        String url = "";
+        if (!titles.isEmpty())
         {
-            log.warn("Gear lookup failed for: {}", itemName, e);
-            return "Couldn't look up '" + itemName + "'.";
+            String title = titles.get(0);
+            wikiInfo = wikiClient.getPageContent(title);
+            url = "https://oldschool.runescape.wiki/w/" + title.replace(" ", "_");
+            if (wikiInfo.length() > 800)
+            {
+                wikiInfo = wikiInfo.substring(0, 800) + "...";
+            }
         }
+        return new String[]{wikiInfo, url};
     }
 
     private String handleIron(String args)
@@ -242,7 +301,41 @@ public class SlashCommandHandler
         }
     }
 
-    private String handleCalc(String args)
+    private String handlePerf(String args)
+    {
+        if (args.equalsIgnoreCase("reset"))
+        {
+            perf.reset();
+            return "Performance stats reset.";
+        }
+        return perf.summary();
+    }
+
+    private CompletableFuture<String> handleCalc(String args, CancellationToken token)
+    {
+        String usageError = validateCalc(args);
+        if (usageError != null)
+        {
+            return CompletableFuture.completedFuture(usageError);
+        }
+
+        String[] parts = args.split("\\s+");
+        String skill = parts[0].toLowerCase();
+        int current = Integer.parseInt(parts[1]);
+        int target = Integer.parseInt(parts[2]);
+
+        return async(() -> skillCalc.calculate(skill, current, target), token)
+            .exceptionally(e ->
+            {
+                log.warn("Calc failed for: {}", args, e);
+                return "Couldn't calculate " + skill + " costs right now. Try again in a moment.";
+            });
+    }
+
+    /**
+     * @return a usage message if the /calc arguments are invalid, otherwise null
+     */
+    private String validateCalc(String args)
     {
         if (args.isEmpty())
         {
@@ -278,11 +371,17 @@ public class SlashCommandHandler
                 return "Target level must be higher than current level.";
             }
 
-            return skillCalc.calculate(skill, current, target);
+            return null;
         }
         catch (NumberFormatException e)
         {
             return "Invalid levels. Use numbers: /calc construction 50 99";
         }
     }
+
+    @FunctionalInterface
+    private interface RemoteLookup<T>
+    {
+        T get() throws Exception;
+    }
 }
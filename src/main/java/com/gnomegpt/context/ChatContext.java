@@ -0,0 +1,55 @@
+package com.gnomegpt.context;
+
+import com.gnomegpt.player.PlayerStats;
+import com.gnomegpt.wiki.WikiPage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The raw context gathered for a single chat message, before {@link ContextPacker} fits it to
+ * the model's token budget.
+ */
+public class ChatContext
+{
+    private final List<WikiPage> wikiPages;
+    private final PlayerStats playerStats;
+    private final String calcContext;
+    private final String moneyContext;
+    private final String priceContext;
+
+    public ChatContext(List<WikiPage> wikiPages, PlayerStats playerStats, String calcContext, String moneyContext,
+                       String priceContext)
+    {
+        this.wikiPages = wikiPages != null ? wikiPages : Collections.emptyList();
+        this.playerStats = playerStats != null ? playerStats : PlayerStats.empty();
+        this.calcContext = calcContext != null ? calcContext : "";
+        this.moneyContext = moneyContext != null ? moneyContext : "";
+        this.priceContext = priceContext != null ? priceContext : "";
+    }
+
+    public List<WikiPage> getWikiPages()
+    {
+        return wikiPages;
+    }
+
+    public PlayerStats getPlayerStats()
+    {
+        return playerStats;
+    }
+
+    public String getCalcContext()
+    {
+        return calcContext;
+    }
+
+    public String getMoneyContext()
+    {
+        return moneyContext;
+    }
+
+    public String getPriceContext()
+    {
+        return priceContext;
+    }
+}
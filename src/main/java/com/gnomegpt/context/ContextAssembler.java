@@ -0,0 +1,433 @@
+package com.gnomegpt.context;
+
+import com.gnomegpt.calc.SkillCalculator;
+import com.gnomegpt.context.RetrievalPlan.Candidate;
+import com.gnomegpt.data.MoneyMakingGuide;
+import com.gnomegpt.http.CancellationToken;
+import com.gnomegpt.perf.RequestTrace;
+import com.gnomegpt.player.PlayerStats;
+import com.gnomegpt.player.Skill;
+import com.gnomegpt.search.QueryExtractor;
+import com.gnomegpt.wiki.GePriceClient;
+import com.gnomegpt.wiki.HiscoresClient;
+import com.gnomegpt.wiki.OsrsWikiClient;
+import com.gnomegpt.wiki.PriceFormat;
+import com.gnomegpt.wiki.PriceQuote;
+import com.gnomegpt.wiki.WikiPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gathers wiki, hiscores, money making, GE price and skill calculator context for a chat message.
+ * Each stage runs concurrently on the shared executor with its own deadline; a stage that
+ * misses its deadline or fails contributes empty context instead of holding up the prompt.
+ * On top of that, an overall budget caps how long the prompt waits for context at all.
+ */
+public class ContextAssembler
+{
+    private static final Logger log = LoggerFactory.getLogger(ContextAssembler.class);
+
+    private static final long WIKI_DEADLINE_MS = 8000;
+    private static final long HISCORES_DEADLINE_MS = 4000;
+    private static final long CALC_DEADLINE_MS = 6000;
+    private static final long MONEY_DEADLINE_MS = 5000;
+    private static final long PRICE_DEADLINE_MS = 4000;
+
+    private static final Pattern TARGET_LEVEL_PATTERN = Pattern.compile("(?:to|level|lvl)\\s*(\\d{1,2})");
+    // Longest item name, in words, the price stage looks for in a question
+    private static final int MAX_ITEM_WORDS = 5;
+    // Words that make a question about prices without naming the item
+    private static final Pattern PRICE_WORDS = Pattern.compile(
+        "\\b(?:price[sd]?|worth|value|trend(?:ing)?|crash(?:ing|ed)?|volatile|volatility|volume|ge|grand exchange)\\b");
+
+    private final OsrsWikiClient wikiClient;
+    private final HiscoresClient hiscoresClient;
+    private final MoneyMakingGuide moneyGuide;
+    private final SkillCalculator skillCalc;
+    private final GePriceClient geClient;
+    private final ContextPrefetcher prefetcher;
+    private final ExecutorService executor;
+
+    public ContextAssembler(OsrsWikiClient wikiClient, HiscoresClient hiscoresClient,
+                            MoneyMakingGuide moneyGuide, SkillCalculator skillCalc, GePriceClient geClient,
+                            ContextPrefetcher prefetcher, ExecutorService executor)
+    {
+        this.wikiClient = wikiClient;
+        this.hiscoresClient = hiscoresClient;
+        this.moneyGuide = moneyGuide;
+        this.skillCalc = skillCalc;
+        this.geClient = geClient;
+        this.prefetcher = prefetcher;
+        this.executor = executor;
+    }
+
+    /**
+     * Run all context stages for a message and wait for them to finish, time out, or run out of budget.
+     *
+     * @param message        the trimmed user message
+     * @param rsn            the player's RSN, or null if unknown
+     * @param wikiLookup     whether wiki context is enabled
+     * @param maxWikiResults max pages per wiki search when only one query is made
+     * @param budgetMs       overall time to wait before answering with whatever is ready, 0 for no budget
+     * @param token          cancels the outstanding lookups when the request is superseded
+     * @param trace          receives the wall time of each stage and the stages that missed the budget
+     */
+    public ChatContext assemble(String message, String rsn, boolean wikiLookup, int maxWikiResults,
+                                long budgetMs, CancellationToken token, RequestTrace trace)
+    {
+        long start = System.nanoTime();
+        String lower = message.toLowerCase();
+
+        // Hiscores are shared by the player, money and calc stages, so fetch them once
+        CompletableFuture<PlayerStats> statsFuture = rsn != null
+            ? timed(CompletableFuture.supplyAsync(token.wrap(() -> fetchPlayerStats(rsn), PlayerStats.empty()), executor)
+                .completeOnTimeout(PlayerStats.empty(), HISCORES_DEADLINE_MS, TimeUnit.MILLISECONDS), "ctx.hiscores", trace)
+            : CompletableFuture.completedFuture(PlayerStats.empty());
+
+        List<CompletableFuture<List<Candidate>>> wikiParts = wikiLookup
+            ? wikiParts(message, lower, maxWikiResults, token, trace)
+            : Collections.emptyList();
+        CompletableFuture<List<WikiPage>> wikiFuture = wikiLookup
+            ? timed(CompletableFuture.allOf(wikiParts.toArray(new CompletableFuture[0]))
+                // The page batch gets its own deadline, falling back to the pages the searches brought back
+                .thenCompose(v -> CompletableFuture.supplyAsync(
+                        token.wrap(() -> resolveWiki(wikiParts), Collections.<WikiPage>emptyList()), executor)
+                    .completeOnTimeout(RetrievalPlan.inHand(readyParts(wikiParts)), WIKI_DEADLINE_MS, TimeUnit.MILLISECONDS)),
+                "ctx.wiki", trace)
+            : CompletableFuture.completedFuture(Collections.emptyList());
+
+        CompletableFuture<String> moneyFuture = timed(statsFuture
+            .thenApplyAsync(stats -> token.wrap(() -> moneyStage(lower, stats), "").get(), executor)
+            .completeOnTimeout("", MONEY_DEADLINE_MS, TimeUnit.MILLISECONDS)
+            .exceptionally(e ->
+            {
+                log.warn("Money context error", e);
+                return "";
+            }), "ctx.money", trace);
+
+        CompletableFuture<String> calcFuture = isCalcQuestion(lower)
+            ? timed(statsFuture.thenApplyAsync(stats -> token.wrap(() -> calcStage(lower, stats), "").get(), executor)
+                .completeOnTimeout("", CALC_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                .exceptionally(e ->
+                {
+                    log.warn("Calc context error", e);
+                    return "";
+                }), "ctx.calc", trace)
+            : CompletableFuture.completedFuture("");
+
+        CompletableFuture<String> priceFuture = isPriceQuestion(lower)
+            ? timed(CompletableFuture.supplyAsync(token.wrap(() -> priceStage(lower), ""), executor)
+                .completeOnTimeout("", PRICE_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                .exceptionally(e ->
+                {
+                    log.warn("Price context error", e);
+                    return "";
+                }), "ctx.price", trace)
+            : CompletableFuture.completedFuture("");
+
+        awaitBudget(CompletableFuture.allOf(wikiFuture, statsFuture, moneyFuture, calcFuture, priceFuture), budgetMs);
+
+        // Stages still running carry on in the background and warm the caches for the next question
+        List<WikiPage> wikiPages = wikiFuture.getNow(null);
+        if (wikiPages == null)
+        {
+            // Use the pages that did come back
+            trace.missed("ctx.wiki");
+            wikiPages = RetrievalPlan.inHand(readyParts(wikiParts));
+        }
+        ChatContext context = new ChatContext(wikiPages,
+            ready(statsFuture, PlayerStats.empty(), "ctx.hiscores", trace),
+            ready(calcFuture, "", "ctx.calc", trace), ready(moneyFuture, "", "ctx.money", trace),
+            ready(priceFuture, "", "ctx.price", trace));
+        trace.mark("context", start);
+        return context;
+    }
+
+    private static void awaitBudget(CompletableFuture<Void> stages, long budgetMs)
+    {
+        if (budgetMs <= 0)
+        {
+            stages.join();
+            return;
+        }
+
+        try
+        {
+            stages.get(budgetMs, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            log.debug("Context budget of {}ms ran out, answering with partial context", budgetMs);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            // Each stage falls back to empty context on its own
+            log.debug("Context stage failed", e);
+        }
+    }
+
+    /**
+     * @return the stage's result if it finished in time, otherwise the fallback (recording the miss)
+     */
+    private static <T> T ready(CompletableFuture<T> stage, T fallback, String name, RequestTrace trace)
+    {
+        if (stage.isDone() && !stage.isCompletedExceptionally())
+        {
+            return stage.join();
+        }
+        trace.missed(name);
+        return fallback;
+    }
+
+    /**
+     * Record a stage's wall time, from submission until it completes or hits its deadline.
+     */
+    private static <T> CompletableFuture<T> timed(CompletableFuture<T> stage, String name, RequestTrace trace)
+    {
+        long start = System.nanoTime();
+        return stage.whenComplete((result, error) -> trace.mark(name, start));
+    }
+
+    /**
+     * Start every wiki source for the message. Searches return titles only, so a page several of
+     * them find is fetched once, by {@link RetrievalPlan}, after they all come back.
+     *
+     * @return each source's candidates, highest priority first
+     */
+    private List<CompletableFuture<List<Candidate>>> wikiParts(String message, String lower, int maxWikiResults,
+                                                              CancellationToken token, RequestTrace trace)
+    {
+        long extractStart = System.nanoTime();
+        List<String> queries = QueryExtractor.extractMultiple(message);
+        trace.mark("query.extract", extractStart);
+        List<CompletableFuture<List<Candidate>>> parts = new ArrayList<>();
+
+        // For gear/setup questions, try to fetch strategy pages directly
+        if (isGearQuestion(lower))
+        {
+            String primaryTerm = QueryExtractor.extract(message);
+            parts.add(timed(wikiTask(() -> RetrievalPlan.pages(strategyPage(primaryTerm)),
+                "Strategy page fetch failed for: " + primaryTerm, token), "wiki.strategy", trace));
+        }
+
+        int perQuery = queries.size() > 1 ? 2 : maxWikiResults;
+        for (String query : queries)
+        {
+            // Reuse a search started while the player was typing, falling back if it failed
+            CompletableFuture<List<WikiPage>> prefetched = prefetcher.take(query, perQuery);
+            if (prefetched != null)
+            {
+                parts.add(prefetched
+                    .thenCompose(result -> result != null
+                        ? CompletableFuture.completedFuture(RetrievalPlan.pages(result))
+                        : wikiTask(() -> RetrievalPlan.titles(wikiClient.searchTitles(query, perQuery)),
+                            "Wiki lookup failed for: " + query, token))
+                    .completeOnTimeout(Collections.emptyList(), WIKI_DEADLINE_MS, TimeUnit.MILLISECONDS));
+                continue;
+            }
+
+            parts.add(wikiTask(() -> RetrievalPlan.titles(wikiClient.searchTitles(query, perQuery)),
+                "Wiki lookup failed for: " + query, token));
+        }
+
+        // Pages already seen whose text, not just title, matches the question
+        parts.add(wikiTask(() -> RetrievalPlan.titles(wikiClient.searchLocal(message, maxWikiResults)),
+            "Local search failed for: " + message, token));
+
+        return parts;
+    }
+
+    private List<WikiPage> resolveWiki(List<CompletableFuture<List<Candidate>>> parts)
+    {
+        List<List<Candidate>> ready = readyParts(parts);
+        try
+        {
+            return RetrievalPlan.resolve(ready, wikiClient);
+        }
+        catch (Exception e)
+        {
+            log.debug("Wiki page fetch failed", e);
+            return RetrievalPlan.inHand(ready);
+        }
+    }
+
+    /**
+     * @return the candidates of the sources that are done, in submission order
+     */
+    private static List<List<Candidate>> readyParts(List<CompletableFuture<List<Candidate>>> parts)
+    {
+        List<List<Candidate>> ready = new ArrayList<>();
+        for (CompletableFuture<List<Candidate>> part : parts)
+        {
+            ready.add(part.getNow(Collections.emptyList()));
+        }
+        return ready;
+    }
+
+    private List<WikiPage> strategyPage(String term) throws Exception
+    {
+        WikiPage page = wikiClient.fetchStrategyPage(term);
+        return page != null ? Collections.singletonList(page) : Collections.emptyList();
+    }
+
+    private CompletableFuture<List<Candidate>> wikiTask(WikiFetch fetch, String failureMessage, CancellationToken token)
+    {
+        return CompletableFuture.supplyAsync(token.wrap(() ->
+        {
+            try
+            {
+                return fetch.get();
+            }
+            catch (Exception e)
+            {
+                log.debug(failureMessage, e);
+                return Collections.<Candidate>emptyList();
+            }
+        }, Collections.<Candidate>emptyList()), executor)
+            .completeOnTimeout(Collections.emptyList(), WIKI_DEADLINE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private PlayerStats fetchPlayerStats(String rsn)
+    {
+        try
+        {
+            return hiscoresClient.getPlayerStats(rsn);
+        }
+        catch (Exception e)
+        {
+            log.warn("Hiscores lookup failed for: {}", rsn, e);
+            return PlayerStats.empty();
+        }
+    }
+
+    private String moneyStage(String lower, PlayerStats stats)
+    {
+        if (lower.contains("money") || lower.contains("gp/h") ||
+            lower.contains("gp/hr") || lower.contains("profit") ||
+            lower.contains("earning") || lower.contains("gold per"))
+        {
+            return moneyGuide.getTopMethods(stats, 15);
+        }
+        else if (lower.contains("boss") || lower.contains("slayer"))
+        {
+            return moneyGuide.getMethodsByCategory(
+                lower.contains("boss") ? "boss" : "slayer", stats, 10);
+        }
+        return "";
+    }
+
+    private String calcStage(String query, PlayerStats stats)
+    {
+        StringBuilder context = new StringBuilder();
+
+        for (String skill : SkillCalculator.supportedSkills())
+        {
+            if (query.contains(skill))
+            {
+                Skill statSkill = Skill.fromName(skill);
+                int currentLevel = statSkill != null ? stats.getLevel(statSkill) : 1;
+
+                int targetLevel = 99;
+                Matcher m = TARGET_LEVEL_PATTERN.matcher(query);
+                if (m.find())
+                {
+                    int parsed = Integer.parseInt(m.group(1));
+                    if (parsed > currentLevel && parsed <= 99)
+                    {
+                        targetLevel = parsed;
+                    }
+                }
+
+                if (currentLevel < targetLevel)
+                {
+                    context.append(skillCalc.calculate(skill, currentLevel, targetLevel));
+                    context.append("\n");
+                }
+            }
+        }
+
+        return context.toString();
+    }
+
+    /**
+     * Quote and trend for the item the question names, once the price words are taken out.
+     * Tries the longest run of the remaining words that is exactly an item name (or its plural,
+     * dose or noted form); fuzzy matches are not used here, since "is barrows worth it" would
+     * otherwise quote Barrows gloves.
+     */
+    private String priceStage(String lower)
+    {
+        String query = QueryExtractor.extract(PRICE_WORDS.matcher(lower).replaceAll(" "));
+        if (query == null || query.trim().isEmpty())
+        {
+            return "";
+        }
+
+        String[] words = query.trim().split("\\s+");
+        try
+        {
+            for (int length = Math.min(MAX_ITEM_WORDS, words.length); length > 0; length--)
+            {
+                for (int from = 0; from + length <= words.length; from++)
+                {
+                    String item = String.join(" ", Arrays.copyOfRange(words, from, from + length));
+                    PriceQuote quote = geClient.quoteExact(item);
+                    if (quote != null)
+                    {
+                        return quote.hasPrice()
+                            ? PriceFormat.describe(item, quote, geClient.trend(quote.getItemId()))
+                            : "";
+                    }
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            log.debug("Price lookup failed for: {}", query, e);
+        }
+        return "";
+    }
+
+    private static boolean isGearQuestion(String lower)
+    {
+        return lower.contains("gear") || lower.contains("setup") ||
+            lower.contains("equipment") || lower.contains("bis") ||
+            lower.contains("loadout") || lower.contains("what to wear");
+    }
+
+    private static boolean isCalcQuestion(String lower)
+    {
+        return lower.contains("cost") || lower.contains("how much") ||
+            lower.contains("99") || lower.contains("train") ||
+            lower.contains("level") || lower.contains("xp");
+    }
+
+    private static boolean isPriceQuestion(String lower)
+    {
+        return lower.contains("price") || lower.contains("worth") ||
+            lower.contains("trend") || lower.contains("crash") ||
+            lower.contains("volatil") || lower.contains("volume");
+    }
+
+    @FunctionalInterface
+    private interface WikiFetch
+    {
+        List<Candidate> get() throws Exception;
+    }
+}
@@ -0,0 +1,285 @@
+package com.gnomegpt.context;
+
+import com.gnomegpt.GnomeGptConfig;
+import com.gnomegpt.search.QueryExtractor;
+import com.gnomegpt.wiki.PageChunk;
+import com.gnomegpt.wiki.WikiPage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fits gathered context into a per-model token budget.
+ * <p>
+ * Player stats, calculator, GE price and money making data are small and precise, so they go in first.
+ * Wiki pages are split into section and paragraph chunks, each scored against the question, and
+ * the best chunks are added until the budget is spent, at most {@value #MAX_CHUNKS_PER_PAGE} per
+ * page. Chosen chunks are put back in page order under their section headings, so the gear and
+ * phase sections of a long strategy page can make it in without its intro.
+ */
+public class ContextPacker
+{
+    // Rough average for English text across the GPT and Claude tokenizers
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MIN_PARTIAL_TOKENS = 150;
+    private static final String TRUNCATED = "\n...[truncated]";
+    private static final double TITLE_WEIGHT = 5.0;
+    private static final double HEADING_WEIGHT = 2.0;
+    // The lead usually says what the page is about, which helps when nothing else matches
+    private static final double LEAD_BONUS = 1.0;
+    private static final int MAX_CHUNKS_PER_PAGE = 4;
+    // Pages come in retrieval priority order (strategy page, then each query's results); this
+    // much extra for the first page, tapering off, breaks near-ties in favour of that order
+    private static final double ORDER_WEIGHT = 1.0;
+
+    private enum Kind
+    {
+        PLAYER(1000), CALC(900), PRICE(850), MONEY(800), WIKI(0);
+
+        final double priority;
+
+        Kind(double priority)
+        {
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * @return a rough token count for a piece of text
+     */
+    public static int estimateTokens(String text)
+    {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Context budget for the selected model. Local models often run with a small context window,
+     * and small hosted models gain little from long context but still pay for it in latency.
+     */
+    public static int budgetFor(GnomeGptConfig.LlmProvider provider, String model)
+    {
+        if (provider == GnomeGptConfig.LlmProvider.OLLAMA)
+        {
+            return 1500;
+        }
+
+        String lower = model != null ? model.toLowerCase() : "";
+        if (lower.contains("mini") || lower.contains("nano") || lower.contains("haiku") || lower.contains("flash"))
+        {
+            return 3000;
+        }
+        return 6000;
+    }
+
+    /**
+     * Pack the most relevant context for a question into at most {@code budgetTokens} tokens.
+     */
+    public static PackedContext pack(String query, ChatContext context, int budgetTokens)
+    {
+        List<String> terms = QueryExtractor.terms(query);
+        List<Chunk> chunks = new ArrayList<>();
+
+        String player = context.getPlayerStats().format();
+        addChunk(chunks, Kind.PLAYER, null, null, player, Kind.PLAYER.priority);
+        addChunk(chunks, Kind.CALC, null, null, context.getCalcContext(), Kind.CALC.priority);
+        addChunk(chunks, Kind.PRICE, null, null, context.getPriceContext(), Kind.PRICE.priority);
+        addChunk(chunks, Kind.MONEY, null, null, context.getMoneyContext(), Kind.MONEY.priority);
+        List<WikiPage> pages = context.getWikiPages();
+        for (int i = 0; i < pages.size(); i++)
+        {
+            WikiPage page = pages.get(i);
+            double titleScore = TITLE_WEIGHT * matches(page.getTitle().toLowerCase(), terms)
+                + ORDER_WEIGHT * (pages.size() - i) / pages.size();
+            for (PageChunk part : page.getChunks())
+            {
+                double score = titleScore + relevance(part, terms) + (part.isLead() ? LEAD_BONUS : 0);
+                addChunk(chunks, Kind.WIKI, page, part, part.getText(), score);
+            }
+        }
+
+        // Stable sort, so equally relevant chunks keep page order and the order their queries were made in
+        chunks.sort(Comparator.comparingDouble((Chunk c) -> c.score).reversed());
+
+        // Pages in the order their first chunk was chosen, i.e. best page first
+        Map<WikiPage, List<PageChunk>> chosen = new LinkedHashMap<>();
+        Map<PageChunk, String> chosenText = new IdentityHashMap<>();
+        String playerText = "";
+        String calcText = "";
+        String moneyText = "";
+        String priceText = "";
+        int remaining = budgetTokens;
+        int dropped = 0;
+
+        for (Chunk chunk : chunks)
+        {
+            List<PageChunk> pageChunks = chunk.kind == Kind.WIKI ? chosen.get(chunk.page) : null;
+            if (pageChunks != null && pageChunks.size() >= MAX_CHUNKS_PER_PAGE)
+            {
+                continue;
+            }
+
+            int overhead = 0;
+            if (chunk.kind == Kind.WIKI)
+            {
+                overhead = estimateTokens(headingLine(chunk.part) + "\n\n")
+                    + (pageChunks == null ? estimateTokens(pageHeader(chunk.page)) : 0);
+            }
+            String text = chunk.text;
+
+            if (estimateTokens(text) + overhead > remaining)
+            {
+                int available = remaining - overhead - estimateTokens(TRUNCATED);
+                if (available < MIN_PARTIAL_TOKENS)
+                {
+                    dropped++;
+                    continue;
+                }
+                text = truncate(text, available * CHARS_PER_TOKEN);
+            }
+
+            remaining -= estimateTokens(text) + overhead;
+            switch (chunk.kind)
+            {
+                case PLAYER:
+                    playerText = text;
+                    break;
+                case CALC:
+                    calcText = text;
+                    break;
+                case PRICE:
+                    priceText = text;
+                    break;
+                case MONEY:
+                    moneyText = text;
+                    break;
+                case WIKI:
+                    chosen.computeIfAbsent(chunk.page, p -> new ArrayList<>()).add(chunk.part);
+                    chosenText.put(chunk.part, text);
+                    break;
+            }
+        }
+
+        StringBuilder wiki = new StringBuilder();
+        for (Map.Entry<WikiPage, List<PageChunk>> entry : chosen.entrySet())
+        {
+            List<PageChunk> parts = entry.getValue();
+            parts.sort(Comparator.comparingInt(PageChunk::getPosition));
+
+            wiki.append(pageHeader(entry.getKey()));
+            String heading = "";
+            for (PageChunk part : parts)
+            {
+                if (!part.getHeading().equals(heading))
+                {
+                    wiki.append(headingLine(part));
+                    heading = part.getHeading();
+                }
+                wiki.append(chosenText.get(part)).append("\n\n");
+            }
+        }
+
+        return new PackedContext(wiki.toString(), playerText, calcText, moneyText, priceText,
+            budgetTokens - remaining, budgetTokens, dropped);
+    }
+
+    private static void addChunk(List<Chunk> chunks, Kind kind, WikiPage page, PageChunk part, String text, double score)
+    {
+        if (text != null && !text.trim().isEmpty())
+        {
+            chunks.add(new Chunk(kind, page, part, text, score));
+        }
+    }
+
+    private static String pageHeader(WikiPage page)
+    {
+        return "=== " + page.getTitle() + " ===\n";
+    }
+
+    private static String headingLine(PageChunk part)
+    {
+        return part.isLead() ? "" : "== " + part.getHeading() + " ==\n";
+    }
+
+    /**
+     * Score a chunk by how often the question's terms appear in it, weighting section heading matches.
+     */
+    private static double relevance(PageChunk part, List<String> terms)
+    {
+        String heading = part.getHeading().toLowerCase();
+        String text = part.getText().toLowerCase();
+        double score = HEADING_WEIGHT * matches(heading, terms);
+        for (String term : terms)
+        {
+            score += Math.log1p(countOccurrences(text, term));
+        }
+        return score;
+    }
+
+    /**
+     * @return how many of the terms appear in the text at all
+     */
+    private static int matches(String text, List<String> terms)
+    {
+        int count = 0;
+        for (String term : terms)
+        {
+            if (text.contains(term))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int countOccurrences(String text, String term)
+    {
+        int count = 0;
+        int idx = text.indexOf(term);
+        while (idx >= 0)
+        {
+            count++;
+            idx = text.indexOf(term, idx + term.length());
+        }
+        return count;
+    }
+
+    /**
+     * Cut text to at most {@code maxChars}, preferring a paragraph or line break.
+     */
+    private static String truncate(String text, int maxChars)
+    {
+        int cut = text.lastIndexOf("\n\n", maxChars);
+        if (cut < maxChars / 2)
+        {
+            cut = text.lastIndexOf('\n', maxChars);
+        }
+        if (cut < maxChars / 2)
+        {
+            cut = maxChars;
+        }
+        return text.substring(0, cut) + TRUNCATED;
+    }
+
+    private static class Chunk
+    {
+        final Kind kind;
+        // Set for wiki chunks only
+        final WikiPage page;
+        final PageChunk part;
+        final String text;
+        final double score;
+
+        Chunk(Kind kind, WikiPage page, PageChunk part, String text, double score)
+        {
+            this.kind = kind;
+            this.page = page;
+            this.part = part;
+            this.text = text;
+            this.score = score;
+        }
+    }
+}
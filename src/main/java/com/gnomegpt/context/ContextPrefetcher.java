@@ -0,0 +1,276 @@
+package com.gnomegpt.context;
+
+import com.gnomegpt.http.CancellationToken;
+import com.gnomegpt.search.QueryExtractor;
+import com.gnomegpt.wiki.GePriceClient;
+import com.gnomegpt.wiki.HiscoresClient;
+import com.gnomegpt.wiki.OsrsWikiClient;
+import com.gnomegpt.wiki.WikiPage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Speculatively gathers context while the player is still typing.
+ * <p>
+ * The panel calls {@link #prefetch} with the partial input (already debounced). Runs are
+ * rate-limited to one per {@value #MIN_INTERVAL_MS} ms with the latest input winning, each run
+ * starts at most {@value #MAX_QUERIES_PER_RUN} wiki searches, and at most {@value #MAX_ENTRIES}
+ * speculative results are held at once. Searches and results for text the player has typed past
+ * are dropped, so the cap never keeps the current input from being prefetched.
+ * When the message is sent, {@link ContextAssembler} picks up matching results with {@link #take}.
+ */
+public class ContextPrefetcher
+{
+    private static final Logger log = LoggerFactory.getLogger(ContextPrefetcher.class);
+
+    private static final long MIN_INTERVAL_MS = 1000;
+    private static final long ENTRY_TTL_MS = 60_000;
+    private static final long STATS_WARM_INTERVAL_MS = 60_000;
+    private static final int MAX_QUERIES_PER_RUN = 3;
+    private static final int MAX_ENTRIES = 8;
+    private static final int MIN_INPUT_LENGTH = 4;
+
+    private final OsrsWikiClient wikiClient;
+    private final HiscoresClient hiscoresClient;
+    private final GePriceClient geClient;
+
+    // Two threads: speculative work must never crowd out a real request
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(2, r ->
+    {
+        Thread t = new Thread(r, "gnomegpt-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by this
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private String pendingInput;
+    private String pendingRsn;
+    private boolean pendingWiki;
+    private int pendingMaxWikiResults;
+    private boolean runScheduled = false;
+    private long lastRunAt = 0;
+    private long lastStatsWarmAt = 0;
+
+    public ContextPrefetcher(OsrsWikiClient wikiClient, HiscoresClient hiscoresClient, GePriceClient geClient)
+    {
+        this.wikiClient = wikiClient;
+        this.hiscoresClient = hiscoresClient;
+        this.geClient = geClient;
+    }
+
+    /**
+     * Queue a prefetch for the current partial input. Calls arriving faster than the rate limit
+     * collapse into a single run with the most recent input.
+     */
+    public synchronized void prefetch(String partialInput, String rsn, boolean wikiLookup, int maxWikiResults)
+    {
+        if (partialInput == null || partialInput.trim().length() < MIN_INPUT_LENGTH)
+        {
+            return;
+        }
+
+        pendingInput = partialInput.trim();
+        pendingRsn = rsn;
+        pendingWiki = wikiLookup;
+        pendingMaxWikiResults = maxWikiResults;
+
+        if (runScheduled)
+        {
+            return;
+        }
+
+        runScheduled = true;
+        long wait = Math.max(0, lastRunAt + MIN_INTERVAL_MS - System.currentTimeMillis());
+        executor.schedule(this::runPending, wait, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Claim a speculative search result for a query, if one is fresh.
+     *
+     * @return a future yielding the searchAndFetch pages, or null on failure; null if nothing was prefetched
+     */
+    public synchronized CompletableFuture<List<WikiPage>> take(String query, int maxResults)
+    {
+        Entry entry = entries.remove(key(query, maxResults));
+        if (entry == null || entry.isExpired())
+        {
+            return null;
+        }
+        return entry.future;
+    }
+
+    /**
+     * Cancel all speculative work, e.g. when the chat is cleared.
+     */
+    public synchronized void cancelAll()
+    {
+        for (Entry entry : entries.values())
+        {
+            entry.token.cancel();
+        }
+        entries.clear();
+        pendingInput = null;
+    }
+
+    public void shutdown()
+    {
+        cancelAll();
+        executor.shutdownNow();
+    }
+
+    private void runPending()
+    {
+        String input;
+        String rsn;
+        boolean wiki;
+        int maxWikiResults;
+        synchronized (this)
+        {
+            runScheduled = false;
+            lastRunAt = System.currentTimeMillis();
+            if (pendingInput == null)
+            {
+                return;
+            }
+            input = pendingInput;
+            rsn = pendingRsn;
+            wiki = pendingWiki;
+            maxWikiResults = pendingMaxWikiResults;
+            pendingInput = null;
+        }
+
+        if (wiki)
+        {
+            prefetchWiki(input, maxWikiResults);
+        }
+        warmStats(rsn);
+        warmPrices(input.toLowerCase());
+    }
+
+    private synchronized void prefetchWiki(String input, int maxWikiResults)
+    {
+        // Use the same queries and page counts the assembler will, so the results line up
+        List<String> queries = QueryExtractor.extractMultiple(input);
+        int perQuery = queries.size() > 1 ? 2 : maxWikiResults;
+        List<String> wanted = queries.subList(0, Math.min(queries.size(), MAX_QUERIES_PER_RUN));
+
+        Set<String> wantedKeys = new HashSet<>();
+        for (String query : wanted)
+        {
+            wantedKeys.add(key(query, perQuery));
+        }
+
+        // Drop expired results, and both running searches and finished results for text the
+        // player has typed past, so the cap only ever limits work that is still wanted
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<String, Entry> e = it.next();
+            Entry entry = e.getValue();
+            if (entry.isExpired() || !wantedKeys.contains(e.getKey()))
+            {
+                entry.token.cancel();
+                it.remove();
+            }
+        }
+
+        for (String query : wanted)
+        {
+            String key = key(query, perQuery);
+            if (entries.containsKey(key) || entries.size() >= MAX_ENTRIES)
+            {
+                continue;
+            }
+
+            CancellationToken token = new CancellationToken();
+            CompletableFuture<List<WikiPage>> future = CompletableFuture.supplyAsync(token.wrap(() ->
+            {
+                try
+                {
+                    return wikiClient.searchAndFetch(query, perQuery);
+                }
+                catch (Exception e)
+                {
+                    log.debug("Prefetch failed for: {}", query, e);
+                    return null;
+                }
+            }, null), executor);
+            entries.put(key, new Entry(future, token));
+        }
+    }
+
+    private void warmStats(String rsn)
+    {
+        if (rsn == null)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            long now = System.currentTimeMillis();
+            if (now - lastStatsWarmAt < STATS_WARM_INTERVAL_MS)
+            {
+                return;
+            }
+            lastStatsWarmAt = now;
+        }
+
+        executor.execute(() ->
+        {
+            try
+            {
+                hiscoresClient.getPlayerStats(rsn);
+            }
+            catch (Exception e)
+            {
+                log.debug("Hiscores prefetch failed for: {}", rsn, e);
+            }
+        });
+    }
+
+    private void warmPrices(String lower)
+    {
+        // The item mapping is one large download; only fetch it when prices are likely needed
+        if (lower.contains("price") || lower.contains("cost") || lower.contains("how much") ||
+            lower.contains("99") || lower.contains("train") || lower.contains("gp"))
+        {
+            executor.execute(geClient::warmUp);
+        }
+    }
+
+    private static String key(String query, int maxResults)
+    {
+        return query.toLowerCase().trim() + "|" + maxResults;
+    }
+
+    private static class Entry
+    {
+        final CompletableFuture<List<WikiPage>> future;
+        final CancellationToken token;
+        final long createdAt = System.currentTimeMillis();
+
+        Entry(CompletableFuture<List<WikiPage>> future, CancellationToken token)
+        {
+            this.future = future;
+            this.token = token;
+        }
+
+        boolean isExpired()
+        {
+            return System.currentTimeMillis() - createdAt > ENTRY_TTL_MS;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.gnomegpt.context;
+
+/**
+ * Context that fits the model's token budget, ready to be rendered into the system prompt.
+ */
+public class PackedContext
+{
+    private final String wikiContext;
+    private final String playerContext;
+    private final String calcContext;
+    private final String moneyContext;
+    private final String priceContext;
+    private final int tokens;
+    private final int budget;
+    private final int dropped;
+
+    public PackedContext(String wikiContext, String playerContext, String calcContext, String moneyContext,
+                         String priceContext, int tokens, int budget, int dropped)
+    {
+        this.wikiContext = wikiContext;
+        this.playerContext = playerContext;
+        this.calcContext = calcContext;
+        this.moneyContext = moneyContext;
+        this.priceContext = priceContext;
+        this.tokens = tokens;
+        this.budget = budget;
+        this.dropped = dropped;
+    }
+
+    public String getWikiContext()
+    {
+        return wikiContext;
+    }
+
+    public String getPlayerContext()
+    {
+        return playerContext;
+    }
+
+    public String getCalcContext()
+    {
+        return calcContext;
+    }
+
+    public String getMoneyContext()
+    {
+        return moneyContext;
+    }
+
+    public String getPriceContext()
+    {
+        return priceContext;
+    }
+
+    /**
+     * @return the estimated tokens of context packed
+     */
+    public int getTokens()
+    {
+        return tokens;
+    }
+
+    public int getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * @return how many candidate chunks were left out entirely
+     */
+    public int getDropped()
+    {
+        return dropped;
+    }
+}
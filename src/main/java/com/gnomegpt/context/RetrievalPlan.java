@@ -0,0 +1,138 @@
+package com.gnomegpt.context;
+
+import com.gnomegpt.wiki.OsrsWikiClient;
+import com.gnomegpt.wiki.WikiPage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which wiki pages one question draws on.
+ * <p>
+ * Candidates come from several sources at once: the strategy page, each extracted query, searches
+ * prefetched while typing and the local index. Some arrive as pages and most as bare titles.
+ * Once they are in, {@link #resolve} walks them in priority order, keeps each title once and
+ * fetches every page still missing in one batch. A page found by both "vorkath" and "vorkath
+ * strategy" is downloaded once and appears once, and the pages are returned in the priority
+ * order ContextPacker uses to break ties.
+ */
+final class RetrievalPlan
+{
+    // More than this and the packer would throw most of it away anyway
+    static final int MAX_PAGES = 8;
+
+    private RetrievalPlan()
+    {
+    }
+
+    /**
+     * @param parts candidates from each source, highest priority source first
+     * @return up to {@value #MAX_PAGES} unique pages, in priority order
+     */
+    static List<WikiPage> resolve(List<List<Candidate>> parts, OsrsWikiClient wikiClient) throws IOException
+    {
+        Map<String, Candidate> chosen = choose(parts);
+
+        List<String> missing = new ArrayList<>();
+        for (Candidate candidate : chosen.values())
+        {
+            if (candidate.page == null)
+            {
+                missing.add(candidate.title);
+            }
+        }
+        Map<String, WikiPage> fetched = missing.isEmpty() ? new LinkedHashMap<>() : wikiClient.getPages(missing);
+
+        List<WikiPage> pages = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Candidate candidate : chosen.values())
+        {
+            WikiPage page = candidate.page != null ? candidate.page : fetched.get(candidate.title);
+            // A redirect can land two titles on one page
+            if (page != null && seen.add(page.getTitle().toLowerCase()))
+            {
+                pages.add(page);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * @return the unique pages already in hand, for when there's no time left to fetch the rest
+     */
+    static List<WikiPage> inHand(List<List<Candidate>> parts)
+    {
+        List<WikiPage> pages = new ArrayList<>();
+        for (Candidate candidate : choose(parts).values())
+        {
+            if (candidate.page != null)
+            {
+                pages.add(candidate.page);
+            }
+        }
+        return pages;
+    }
+
+    private static Map<String, Candidate> choose(List<List<Candidate>> parts)
+    {
+        Map<String, Candidate> chosen = new LinkedHashMap<>();
+        for (List<Candidate> part : parts)
+        {
+            for (Candidate candidate : part)
+            {
+                String key = candidate.title.toLowerCase().replace('_', ' ');
+                Candidate previous = chosen.get(key);
+                if (previous == null && chosen.size() < MAX_PAGES)
+                {
+                    chosen.put(key, candidate);
+                }
+                else if (previous != null && previous.page == null && candidate.page != null)
+                {
+                    // Keep the higher priority slot, but use the content we already have
+                    chosen.put(key, candidate);
+                }
+            }
+        }
+        return chosen;
+    }
+
+    static List<Candidate> pages(List<WikiPage> pages)
+    {
+        List<Candidate> candidates = new ArrayList<>();
+        for (WikiPage page : pages)
+        {
+            candidates.add(new Candidate(page.getTitle(), page));
+        }
+        return candidates;
+    }
+
+    static List<Candidate> titles(List<String> titles)
+    {
+        List<Candidate> candidates = new ArrayList<>();
+        for (String title : titles)
+        {
+            candidates.add(new Candidate(title, null));
+        }
+        return candidates;
+    }
+
+    /**
+     * A page to include: its title, and its content if a source already fetched it.
+     */
+    static final class Candidate
+    {
+        final String title;
+        final WikiPage page;
+
+        Candidate(String title, WikiPage page)
+        {
+            this.title = title;
+            this.page = page;
+        }
+    }
+}
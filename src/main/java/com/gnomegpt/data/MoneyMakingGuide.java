@@ -4,6 +4,8 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.gnomegpt.player.PlayerStats;
+import com.gnomegpt.player.Skill;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,11 +71,11 @@ public class MoneyMakingGuide
 
     /**
      * Get top money makers, optionally filtered by player stats.
-     * @param playerStats map of skill name -> level (can be null for no filtering)
+     * @param playerStats the player's stats (can be null or empty for no filtering)
      * @param limit max results
      * @return formatted string for LLM context
      */
-    public String getTopMethods(Map<String, Integer> playerStats, int limit)
+    public String getTopMethods(PlayerStats playerStats, int limit)
     {
         StringBuilder sb = new StringBuilder();
         sb.append("Top Money Making Methods (from OSRS Wiki, sorted by GP/hr):\n\n");
@@ -87,20 +89,19 @@ public class MoneyMakingGuide
             boolean canDo = true;
             if (playerStats != null && !playerStats.isEmpty() && m.level > 1)
             {
-                String skillKey = m.skill.toLowerCase();
                 // For combat, check overall combat level approximation
-                if (skillKey.equals("combat"))
+                if (m.combat)
                 {
                     // rough check — if they have attack/strength/ranged data
-                    int combatEst = playerStats.getOrDefault("attack", 1);
-                    combatEst = Math.max(combatEst, playerStats.getOrDefault("strength", 1));
-                    combatEst = Math.max(combatEst, playerStats.getOrDefault("ranged", 1));
-                    combatEst = Math.max(combatEst, playerStats.getOrDefault("magic", 1));
+                    int combatEst = playerStats.getLevel(Skill.ATTACK);
+                    combatEst = Math.max(combatEst, playerStats.getLevel(Skill.STRENGTH));
+                    combatEst = Math.max(combatEst, playerStats.getLevel(Skill.RANGED));
+                    combatEst = Math.max(combatEst, playerStats.getLevel(Skill.MAGIC));
                     canDo = combatEst >= (m.level * 0.7); // rough approximation
                 }
-                else if (playerStats.containsKey(skillKey))
+                else if (m.requiredSkill != null && playerStats.has(m.requiredSkill))
                 {
-                    canDo = playerStats.get(skillKey) >= m.level;
+                    canDo = playerStats.getLevel(m.requiredSkill) >= m.level;
                 }
             }
 
@@ -126,7 +127,7 @@ public class MoneyMakingGuide
     /**
      * Get methods for a specific category or skill.
      */
-    public String getMethodsByCategory(String query, Map<String, Integer> playerStats, int limit)
+    public String getMethodsByCategory(String query, PlayerStats playerStats, int limit)
     {
         String lower = query.toLowerCase();
         List<MoneyMethod> filtered = new ArrayList<>();
@@ -181,6 +182,9 @@ public class MoneyMakingGuide
         final String category;
         final String intensity;
         final boolean members;
+        // Resolved once at load so filtering doesn't re-parse skill names per request
+        final Skill requiredSkill;
+        final boolean combat;
 
         MoneyMethod(String name, long gpHr, String skill, int level, String category, String intensity, boolean members)
         {
@@ -191,6 +195,8 @@ public class MoneyMakingGuide
             this.category = category;
             this.intensity = intensity;
             this.members = members;
+            this.requiredSkill = Skill.fromName(skill);
+            this.combat = skill.equalsIgnoreCase("combat");
         }
     }
 }
@@ -0,0 +1,132 @@
+package com.gnomegpt.http;
+
+import okhttp3.Call;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cancellation handle for one chat request or slash command.
+ * <p>
+ * Work done on behalf of the request runs with the token bound to its thread (see {@link #wrap}).
+ * HTTP clients register their calls through {@link #track}, so cancelling the token aborts every
+ * outstanding OkHttp call, including open SSE streams, and lets queued work bail out early.
+ */
+public class CancellationToken
+{
+    private static final ThreadLocal<CancellationToken> CURRENT = new ThreadLocal<>();
+
+    private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    /**
+     * @return the token bound to the calling thread, or null if none
+     */
+    public static CancellationToken current()
+    {
+        return CURRENT.get();
+    }
+
+    /**
+     * Register a call with the token bound to the calling thread, if any.
+     * A call made after the token was cancelled is cancelled immediately.
+     */
+    public static Call track(Call call)
+    {
+        CancellationToken token = CURRENT.get();
+        if (token != null)
+        {
+            token.register(call);
+        }
+        return call;
+    }
+
+    /**
+     * @return true if the calling thread is working for a cancelled request
+     */
+    public static boolean isCurrentCancelled()
+    {
+        CancellationToken token = CURRENT.get();
+        return token != null && token.isCancelled();
+    }
+
+    public void register(Call call)
+    {
+        calls.add(call);
+        if (cancelled)
+        {
+            call.cancel();
+        }
+    }
+
+    public void cancel()
+    {
+        cancelled = true;
+        for (Call call : calls)
+        {
+            call.cancel();
+        }
+        calls.clear();
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Run a task with this token bound to the executing thread.
+     */
+    public void run(Runnable task)
+    {
+        CancellationToken previous = CURRENT.get();
+        CURRENT.set(this);
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Wrap a supplier so it runs with this token bound to whichever pool thread picks it up.
+     * If the token is already cancelled when the task starts, the fallback is returned instead.
+     */
+    public <T> Supplier<T> wrap(Supplier<T> task, T fallback)
+    {
+        return () ->
+        {
+            if (cancelled)
+            {
+                return fallback;
+            }
+
+            CancellationToken previous = CURRENT.get();
+            CURRENT.set(this);
+            try
+            {
+                return task.get();
+            }
+            finally
+            {
+                restore(previous);
+            }
+        };
+    }
+
+    private static void restore(CancellationToken previous)
+    {
+        if (previous == null)
+        {
+            CURRENT.remove();
+        }
+        else
+        {
+            CURRENT.set(previous);
+        }
+    }
+}
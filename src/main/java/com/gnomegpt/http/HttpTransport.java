@@ -0,0 +1,335 @@
+package com.gnomegpt.http;
+
+import com.gnomegpt.perf.PerfStats;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one place GnomeGPT does HTTP.
+ * <p>
+ * Every client is derived from RuneLite's injected {@link OkHttpClient}, so they all share its
+ * connection pool and dispatcher instead of each holding their own. On top of that this adds a
+ * per-host concurrency limit, per-host request/latency counters (shown in /perf), a small disk
+ * cache for the wiki and price GETs, and connection pre-warming for the LLM endpoint.
+ * <p>
+ * API requests that reach the network are also paced by a per-host {@link RateLimiter}. Wiki API
+ * calls carry maxlag, and a maxlag, 429 or 503 reply with a short Retry-After slows the host
+ * down and is retried after the pause.
+ */
+public class HttpTransport
+{
+    private static final Logger log = LoggerFactory.getLogger(HttpTransport.class);
+
+    private static final long HTTP_CACHE_BYTES = 20L * 1024 * 1024;
+    private static final int DEFAULT_MAX_PER_HOST = 4;
+
+    private static final String WIKI_HOST = "oldschool.runescape.wiki";
+    private static final String PRICES_HOST = "prices.runescape.wiki";
+    private static final String HISCORES_HOST = "secure.runescape.com";
+
+    private static final Map<String, Integer> MAX_PER_HOST = new HashMap<>();
+
+    static
+    {
+        MAX_PER_HOST.put(WIKI_HOST, 4);
+        MAX_PER_HOST.put(PRICES_HOST, 2);
+        MAX_PER_HOST.put(HISCORES_HOST, 2);
+    }
+
+    // Seconds of replication lag at which MediaWiki should turn us away rather than add load
+    private static final String MAXLAG_SECONDS = "5";
+    private static final long MAX_THROTTLE_WAIT_MS = 10_000;
+    private static final long DEFAULT_RETRY_AFTER_MS = 5_000;
+    private static final int MAX_RETRIES = 2;
+
+    private final PerfStats perf;
+    private final Cache cache;
+    private final OkHttpClient shared;
+    private final OkHttpClient apiClient;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Map<String, RateLimiter> rateLimits = new HashMap<>();
+
+    /**
+     * @param base     RuneLite's shared client
+     * @param cacheDir directory for the HTTP response cache
+     * @param http2    whether to negotiate HTTP/2; when false everything goes over HTTP/1.1
+     * @param perf     receives per-host request counts and latencies
+     */
+    public HttpTransport(OkHttpClient base, Path cacheDir, boolean http2, PerfStats perf)
+    {
+        this.perf = perf;
+        this.cache = new Cache(cacheDir.toFile(), HTTP_CACHE_BYTES);
+
+        OkHttpClient.Builder builder = base.newBuilder()
+            .addInterceptor(this::limitAndMeasure);
+        builder.protocols(http2
+            ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+            : Collections.singletonList(Protocol.HTTP_1_1));
+        this.shared = builder.build();
+
+        // Sustained requests per second and burst; cache hits don't count
+        rateLimits.put(WIKI_HOST, new RateLimiter(5, 5));
+        rateLimits.put(PRICES_HOST, new RateLimiter(2, 4));
+        rateLimits.put(HISCORES_HOST, new RateLimiter(1, 2));
+
+        this.apiClient = shared.newBuilder()
+            .cache(cache)
+            .addInterceptor(this::retryThrottled)
+            .addNetworkInterceptor(this::throttle)
+            .addNetworkInterceptor(HttpTransport::applyCachePolicy)
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * @return the client for wiki, GE price and hiscores lookups (10s timeouts, disk cache)
+     */
+    public OkHttpClient apiClient()
+    {
+        return apiClient;
+    }
+
+    /**
+     * @return a client for an LLM provider: no cache, provider-specific timeouts, same pool
+     */
+    public OkHttpClient llmClient(long connectTimeoutSeconds, long readTimeoutSeconds)
+    {
+        return shared.newBuilder()
+            .connectTimeout(connectTimeoutSeconds, TimeUnit.SECONDS)
+            .readTimeout(readTimeoutSeconds, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * Open a connection to {@code url} in the background so the first real request skips the
+     * DNS, TCP and TLS handshakes. The response itself is ignored.
+     */
+    public void prewarm(String url)
+    {
+        if (url == null || url.isEmpty())
+        {
+            return;
+        }
+
+        Request request;
+        try
+        {
+            request = new Request.Builder().url(url).head().build();
+        }
+        catch (IllegalArgumentException e)
+        {
+            log.debug("Not pre-warming invalid URL: {}", url);
+            return;
+        }
+
+        shared.newCall(request).enqueue(new Callback()
+        {
+            @Override
+            public void onFailure(Call call, IOException e)
+            {
+                log.debug("Pre-warm failed for {}", url, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response)
+            {
+                response.close();
+            }
+        });
+    }
+
+    public void close()
+    {
+        try
+        {
+            cache.close();
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to close HTTP cache", e);
+        }
+    }
+
+    private Response limitAndMeasure(Interceptor.Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        String host = request.url().host();
+        Semaphore permits = hostPermits.computeIfAbsent(host,
+            h -> new Semaphore(MAX_PER_HOST.getOrDefault(h, DEFAULT_MAX_PER_HOST)));
+
+        long start = System.nanoTime();
+        try
+        {
+            permits.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for a connection to " + host, e);
+        }
+
+        try
+        {
+            Response response = chain.proceed(request);
+            // For streamed bodies this is time to headers, which is what we can fairly compare
+            perf.recordHttp(host, (System.nanoTime() - start) / 1_000_000,
+                !response.isSuccessful(), response.networkResponse() == null);
+            return response;
+        }
+        catch (IOException e)
+        {
+            perf.recordHttp(host, (System.nanoTime() - start) / 1_000_000, true, false);
+            throw e;
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    /**
+     * Add maxlag to wiki API calls, and retry a request the server turned away with a short
+     * enough Retry-After. {@link #throttle} has already paused the host by then.
+     */
+    private Response retryThrottled(Interceptor.Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        HttpUrl url = request.url();
+        if (WIKI_HOST.equals(url.host()) && url.encodedPath().endsWith("/api.php") && url.queryParameter("maxlag") == null)
+        {
+            request = request.newBuilder()
+                .url(url.newBuilder().addQueryParameter("maxlag", MAXLAG_SECONDS).build())
+                .build();
+        }
+
+        Response response = chain.proceed(request);
+        for (int attempt = 0; attempt < MAX_RETRIES && isThrottled(response); attempt++)
+        {
+            if (retryAfterMillis(response) > MAX_THROTTLE_WAIT_MS)
+            {
+                break;
+            }
+            response.close();
+            response = chain.proceed(request);
+        }
+        return response;
+    }
+
+    /**
+     * Pace requests that actually go out to the network, and adapt the host's rate to its replies.
+     */
+    private Response throttle(Interceptor.Chain chain) throws IOException
+    {
+        String host = chain.request().url().host();
+        RateLimiter limiter = rateLimits.get(host);
+        if (limiter == null)
+        {
+            return chain.proceed(chain.request());
+        }
+
+        long waited = limiter.acquire(MAX_THROTTLE_WAIT_MS);
+        if (waited > 0)
+        {
+            perf.recordThrottle(host, waited);
+        }
+
+        Response response = chain.proceed(chain.request());
+        if (isThrottled(response))
+        {
+            long pause = retryAfterMillis(response);
+            log.debug("{} asked us to back off for {}ms (HTTP {})", host, pause, response.code());
+            limiter.backOff(pause);
+            perf.recordBackOff(host);
+        }
+        else if (response.isSuccessful())
+        {
+            limiter.onSuccess();
+        }
+        return response;
+    }
+
+    private static boolean isThrottled(Response response)
+    {
+        return response.code() == 429 || response.code() == 503
+            // MediaWiki reports maxlag as a 200 with an error code header
+            || "maxlag".equals(response.header("MediaWiki-API-Error"));
+    }
+
+    private static long retryAfterMillis(Response response)
+    {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null)
+        {
+            try
+            {
+                return Long.parseLong(retryAfter.trim()) * 1000;
+            }
+            catch (NumberFormatException e)
+            {
+                // An HTTP date; not worth parsing for a pause this short
+            }
+        }
+        return DEFAULT_RETRY_AFTER_MS;
+    }
+
+    /**
+     * The wiki API and prices API send no-cache headers, so give their GETs a lifetime that matches
+     * how often the data really changes. Hiscores are left alone; they are cached in memory, as are
+     * requests that ask not to be stored.
+     */
+    private static Response applyCachePolicy(Interceptor.Chain chain) throws IOException
+    {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!"GET".equals(request.method()) || request.cacheControl().noStore()
+            || !response.isSuccessful() || isThrottled(response))
+        {
+            return response;
+        }
+
+        int maxAge = cacheSeconds(request.url());
+        if (maxAge <= 0)
+        {
+            return response;
+        }
+
+        return response.newBuilder()
+            .removeHeader("Pragma")
+            .header("Cache-Control", "public, max-age=" + maxAge)
+            .build();
+    }
+
+    private static int cacheSeconds(HttpUrl url)
+    {
+        switch (url.host())
+        {
+            case WIKI_HOST:
+                return 300;
+            case PRICES_HOST:
+                // The item mapping changes with game updates; latest prices every minute or so
+                return url.encodedPath().endsWith("/mapping") ? 3600 : 60;
+            default:
+                return 0;
+        }
+    }
+}
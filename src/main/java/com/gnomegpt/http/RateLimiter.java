@@ -0,0 +1,156 @@
+package com.gnomegpt.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token bucket for one host that hands out send times first come, first served.
+ * <p>
+ * Callers reserve the next slot under a fair lock and sleep until it outside the lock, so a burst
+ * of parallel lookups goes out evenly spaced in arrival order instead of racing. The bucket may go
+ * into debt: each queued reservation pushes the next one back by one interval.
+ * <p>
+ * The rate adapts. A 429 or maxlag reply halves it and puts the bucket into debt for the server's
+ * Retry-After, and each success afterwards wins back a little, up to the configured rate.
+ */
+public class RateLimiter
+{
+    // Additive increase per success, as a fraction of the configured rate
+    private static final double RECOVERY_STEP = 0.05;
+    private static final double MIN_FRACTION = 0.1;
+
+    private final double maxRate;
+    private final double burst;
+    private final Clock clock;
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    // Guarded by lock
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Time source and sleep, so tests can run the bucket without waiting on it.
+     */
+    interface Clock
+    {
+        Clock SYSTEM = new Clock()
+        {
+            @Override
+            public long nanoTime()
+            {
+                return System.nanoTime();
+            }
+
+            @Override
+            public void sleep(long nanos) throws InterruptedException
+            {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            }
+        };
+
+        long nanoTime();
+
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * @param perSecond sustained requests per second
+     * @param burst     requests that may go out back to back after a quiet spell
+     */
+    public RateLimiter(double perSecond, int burst)
+    {
+        this(perSecond, burst, Clock.SYSTEM);
+    }
+
+    RateLimiter(double perSecond, int burst, Clock clock)
+    {
+        this.maxRate = perSecond;
+        this.rate = perSecond;
+        this.burst = burst;
+        this.tokens = burst;
+        this.clock = clock;
+        this.refilledAt = clock.nanoTime();
+    }
+
+    /**
+     * Wait for this caller's turn to send.
+     *
+     * @param maxWaitMillis give up rather than wait longer than this
+     * @return how long the caller waited, in milliseconds
+     * @throws IOException if the wait would be too long or the thread was interrupted
+     */
+    public long acquire(long maxWaitMillis) throws IOException
+    {
+        long waitNanos;
+        lock.lock();
+        try
+        {
+            refill();
+            waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) / rate * 1e9);
+            if (waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMillis))
+            {
+                throw new IOException("Rate limited: next request slot in " + waitNanos / 1_000_000 + "ms");
+            }
+            tokens -= 1;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if (waitNanos > 0)
+        {
+            try
+            {
+                clock.sleep(waitNanos);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a request slot");
+            }
+        }
+        return waitNanos / 1_000_000;
+    }
+
+    /**
+     * The server asked us to slow down: halve the rate and send nothing for {@code pauseMillis}.
+     */
+    public void backOff(long pauseMillis)
+    {
+        lock.lock();
+        try
+        {
+            refill();
+            rate = Math.max(maxRate * MIN_FRACTION, rate / 2);
+            tokens = Math.min(tokens, -(pauseMillis / 1000.0) * rate);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess()
+    {
+        lock.lock();
+        try
+        {
+            rate = Math.min(maxRate, rate + maxRate * RECOVERY_STEP);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void refill()
+    {
+        long now = clock.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,113 @@
+package com.gnomegpt.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call and everyone who
+ * asks for that key before it finishes gets the same result or exception, so overlapping queries,
+ * prefetches and parallel context stages make one HTTP request between them.
+ * <p>
+ * Nothing is remembered once the call returns; caching is left to the caller.
+ * If the first caller's own request was cancelled, the others don't inherit the cancellation
+ * and run the call again themselves. A follower whose own request is cancelled stops waiting
+ * rather than holding its thread until the shared call returns.
+ */
+public class SingleFlight<K, V>
+{
+    private static final Exception LEADER_CANCELLED = new Exception("Shared call was cancelled by its caller");
+    // How often a waiting follower checks whether its own request was cancelled
+    private static final long CANCEL_POLL_MS = 50;
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface IoCall<V>
+    {
+        V call() throws IOException;
+    }
+
+    public V execute(K key, IoCall<V> call) throws IOException
+    {
+        while (true)
+        {
+            CompletableFuture<V> mine = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+            if (existing == null)
+            {
+                return lead(key, mine, call);
+            }
+
+            try
+            {
+                return follow(existing);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a shared call");
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause == LEADER_CANCELLED && !CancellationToken.isCurrentCancelled())
+                {
+                    continue;
+                }
+                if (cause instanceof IOException)
+                {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private static <V> V follow(CompletableFuture<V> shared)
+        throws InterruptedException, ExecutionException, InterruptedIOException
+    {
+        while (true)
+        {
+            if (CancellationToken.isCurrentCancelled())
+            {
+                throw new InterruptedIOException("Cancelled waiting for a shared call");
+            }
+            try
+            {
+                return shared.get(CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e)
+            {
+                // Still running; check our own cancellation again
+            }
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> mine, IoCall<V> call) throws IOException
+    {
+        try
+        {
+            V result = call.call();
+            mine.complete(result);
+            return result;
+        }
+        catch (Throwable t)
+        {
+            mine.completeExceptionally(CancellationToken.isCurrentCancelled() ? LEADER_CANCELLED : t);
+            throw t;
+        }
+        finally
+        {
+            inFlight.remove(key, mine);
+        }
+    }
+}
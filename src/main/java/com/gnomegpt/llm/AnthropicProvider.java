@@ -4,6 +4,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.gnomegpt.chat.ChatMessage;
+import com.gnomegpt.http.CancellationToken;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,7 +13,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class AnthropicProvider implements LlmProvider
@@ -24,12 +24,9 @@ public class AnthropicProvider implements LlmProvider
     private final OkHttpClient httpClient;
     private String apiKey;
 
-    public AnthropicProvider()
+    public AnthropicProvider(OkHttpClient httpClient)
     {
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(90, TimeUnit.SECONDS)
-            .build();
+        this.httpClient = httpClient;
     }
 
     public void setApiKey(String apiKey)
@@ -38,23 +35,23 @@ public class AnthropicProvider implements LlmProvider
     }
 
     @Override
-    public boolean isAvailable()
+    public String getEndpoint()
     {
-        return apiKey != null && !apiKey.trim().isEmpty();
+        return API_URL;
     }
 
-    private String extractSystem(List<ChatMessage> messages)
+    @Override
+    public boolean isAvailable()
     {
-        for (ChatMessage m : messages)
-        {
-            if (m.getRole() == ChatMessage.Role.SYSTEM) return m.getContent();
-        }
-        return "";
+        return apiKey != null && !apiKey.trim().isEmpty();
     }
 
+    /**
+     * Build the request body. System messages become system blocks in order; blocks that are the
+     * same on every turn get a cache_control marker so Anthropic caches the prompt up to them.
+     */
     private JsonObject buildBody(List<ChatMessage> messages, String model, boolean stream)
     {
-        String systemPrompt = extractSystem(messages);
         List<ChatMessage> nonSystem = messages.stream()
             .filter(m -> m.getRole() != ChatMessage.Role.SYSTEM)
             .collect(Collectors.toList());
@@ -64,9 +61,25 @@ public class AnthropicProvider implements LlmProvider
         body.addProperty("max_tokens", 1024);
         body.addProperty("stream", stream);
 
-        if (!systemPrompt.isEmpty())
+        JsonArray system = new JsonArray();
+        for (ChatMessage msg : messages)
+        {
+            if (msg.getRole() != ChatMessage.Role.SYSTEM || msg.getContent().isEmpty()) continue;
+
+            JsonObject block = new JsonObject();
+            block.addProperty("type", "text");
+            block.addProperty("text", msg.getContent());
+            if (msg.isCacheable())
+            {
+                JsonObject cacheControl = new JsonObject();
+                cacheControl.addProperty("type", "ephemeral");
+                block.add("cache_control", cacheControl);
+            }
+            system.add(block);
+        }
+        if (system.size() > 0)
         {
-            body.addProperty("system", systemPrompt);
+            body.add("system", system);
         }
 
         JsonArray messagesArr = new JsonArray();
@@ -99,13 +112,13 @@ public class AnthropicProvider implements LlmProvider
         if (!isAvailable()) return "Please set your Anthropic API key.";
 
         Request request = buildRequest(buildBody(messages, model, false));
-        Response response = httpClient.newCall(request).execute();
+        Response response = CancellationToken.track(httpClient.newCall(request)).execute();
 
         if ((response.code() == 429 || response.code() >= 500))
         {
             response.close();
             try { Thread.sleep(1000); } catch (InterruptedException e) {}
-            response = httpClient.newCall(request).execute();
+            response = CancellationToken.track(httpClient.newCall(request)).execute();
         }
 
         if (response.body() == null) return "Error: Empty response";
@@ -140,7 +153,7 @@ public class AnthropicProvider implements LlmProvider
 
         try
         {
-            Response response = httpClient.newCall(request).execute();
+            Response response = CancellationToken.track(httpClient.newCall(request)).execute();
 
             if (!response.isSuccessful() || response.body() == null)
             {
@@ -149,7 +162,7 @@ public class AnthropicProvider implements LlmProvider
                 if (code == 429 || code >= 500)
                 {
                     try { Thread.sleep(1000); } catch (InterruptedException ie) {}
-                    response = httpClient.newCall(request).execute();
+                    response = CancellationToken.track(httpClient.newCall(request)).execute();
                     if (!response.isSuccessful() || response.body() == null)
                     {
                         callback.onError("Anthropic API error (" + response.code() + ")");
@@ -165,12 +178,19 @@ public class AnthropicProvider implements LlmProvider
             }
 
             StringBuilder fullResponse = new StringBuilder();
+            // input_tokens excludes cache reads and writes; all three arrive in message_start
+            int inputTokens = 0;
+            int cacheReadTokens = 0;
+            int cacheWriteTokens = 0;
+            int outputTokens = -1;
             try (BufferedReader reader = new BufferedReader(
                 new InputStreamReader(response.body().byteStream())))
             {
                 String line;
                 while ((line = reader.readLine()) != null)
                 {
+                    // Superseded or stopped: drop the stream without completing
+                    if (CancellationToken.isCurrentCancelled()) return;
                     if (!line.startsWith("data: ")) continue;
                     String data = line.substring(6).trim();
 
@@ -189,6 +209,25 @@ public class AnthropicProvider implements LlmProvider
                                 callback.onToken(token);
                             }
                         }
+                        else if ("message_start".equals(type))
+                        {
+                            JsonObject message = event.getAsJsonObject("message");
+                            JsonObject usage = message != null ? message.getAsJsonObject("usage") : null;
+                            if (usage != null)
+                            {
+                                inputTokens = intField(usage, "input_tokens");
+                                cacheReadTokens = intField(usage, "cache_read_input_tokens");
+                                cacheWriteTokens = intField(usage, "cache_creation_input_tokens");
+                            }
+                        }
+                        else if ("message_delta".equals(type))
+                        {
+                            JsonObject usage = event.getAsJsonObject("usage");
+                            if (usage != null && usage.has("output_tokens"))
+                            {
+                                outputTokens = usage.get("output_tokens").getAsInt();
+                            }
+                        }
                         else if ("message_stop".equals(type))
                         {
                             break;
@@ -201,11 +240,23 @@ public class AnthropicProvider implements LlmProvider
                 }
             }
 
+            if (outputTokens >= 0)
+            {
+                callback.onUsage(new TokenUsage(inputTokens + cacheReadTokens + cacheWriteTokens,
+                    cacheReadTokens, cacheWriteTokens, outputTokens));
+            }
             callback.onComplete(fullResponse.toString());
         }
         catch (IOException e)
         {
+            // Cancelling the call closes the stream under us; that's not an error
+            if (CancellationToken.isCurrentCancelled()) return;
             callback.onError("Connection error: " + e.getMessage());
         }
     }
+
+    private static int intField(JsonObject obj, String name)
+    {
+        return obj.has(name) && !obj.get(name).isJsonNull() ? obj.get(name).getAsInt() : 0;
+    }
 }
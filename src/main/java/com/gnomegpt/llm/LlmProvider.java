@@ -28,4 +28,9 @@ public interface LlmProvider
     }
 
     boolean isAvailable();
+
+    /**
+     * @return the URL chat requests are sent to, used to pre-warm the connection
+     */
+    String getEndpoint();
 }
@@ -4,13 +4,13 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.gnomegpt.chat.ChatMessage;
+import com.gnomegpt.http.CancellationToken;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class OllamaProvider implements LlmProvider
 {
@@ -20,12 +20,9 @@ public class OllamaProvider implements LlmProvider
     private final OkHttpClient httpClient;
     private String baseUrl;
 
-    public OllamaProvider()
+    public OllamaProvider(OkHttpClient httpClient)
     {
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(120, TimeUnit.SECONDS)
-            .build();
+        this.httpClient = httpClient;
         this.baseUrl = "http://localhost:11434";
     }
 
@@ -34,6 +31,12 @@ public class OllamaProvider implements LlmProvider
         this.baseUrl = url != null && !url.isEmpty() ? url : "http://localhost:11434";
     }
 
+    @Override
+    public String getEndpoint()
+    {
+        return baseUrl;
+    }
+
     @Override
     public boolean isAvailable()
     {
@@ -44,7 +47,7 @@ public class OllamaProvider implements LlmProvider
                 .get()
                 .build();
 
-            try (Response response = httpClient.newCall(request).execute())
+            try (Response response = CancellationToken.track(httpClient.newCall(request)).execute())
             {
                 return response.isSuccessful();
             }
@@ -83,7 +86,7 @@ public class OllamaProvider implements LlmProvider
             .post(RequestBody.create(body.toString(), JSON))
             .build();
 
-        try (Response response = httpClient.newCall(request).execute())
+        try (Response response = CancellationToken.track(httpClient.newCall(request)).execute())
         {
             if (response.body() == null)
             {
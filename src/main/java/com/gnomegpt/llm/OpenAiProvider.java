@@ -4,6 +4,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.gnomegpt.chat.ChatMessage;
+import com.gnomegpt.http.CancellationToken;
 import okhttp3.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,8 +12,8 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class OpenAiProvider implements LlmProvider
 {
@@ -23,12 +24,9 @@ public class OpenAiProvider implements LlmProvider
     private final OkHttpClient httpClient;
     private String apiKey;
 
-    public OpenAiProvider()
+    public OpenAiProvider(OkHttpClient httpClient)
     {
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .readTimeout(90, TimeUnit.SECONDS)
-            .build();
+        this.httpClient = httpClient;
     }
 
     public void setApiKey(String apiKey)
@@ -36,6 +34,12 @@ public class OpenAiProvider implements LlmProvider
         this.apiKey = apiKey;
     }
 
+    @Override
+    public String getEndpoint()
+    {
+        return API_URL;
+    }
+
     @Override
     public boolean isAvailable()
     {
@@ -82,7 +86,7 @@ public class OpenAiProvider implements LlmProvider
 
         try
         {
-            Response response = httpClient.newCall(request).execute();
+            Response response = CancellationToken.track(httpClient.newCall(request)).execute();
 
             if (!response.isSuccessful() || response.body() == null)
             {
@@ -93,7 +97,7 @@ public class OpenAiProvider implements LlmProvider
                 if (response.code() == 429 || response.code() >= 500)
                 {
                     try { Thread.sleep(1000); } catch (InterruptedException ie) {}
-                    response = httpClient.newCall(request).execute();
+                    response = CancellationToken.track(httpClient.newCall(request)).execute();
                     if (!response.isSuccessful() || response.body() == null)
                     {
                         callback.onError("OpenAI API error (" + response.code() + ")");
@@ -116,12 +120,15 @@ public class OpenAiProvider implements LlmProvider
             }
 
             StringBuilder fullResponse = new StringBuilder();
+            TokenUsage usage = null;
             try (BufferedReader reader = new BufferedReader(
                 new InputStreamReader(response.body().byteStream())))
             {
                 String line;
                 while ((line = reader.readLine()) != null)
                 {
+                    // Superseded or stopped: drop the stream without completing
+                    if (CancellationToken.isCurrentCancelled()) return;
                     if (!line.startsWith("data: ")) continue;
                     String data = line.substring(6).trim();
                     if ("[DONE]".equals(data)) break;
@@ -140,6 +147,12 @@ public class OpenAiProvider implements LlmProvider
                                 callback.onToken(token);
                             }
                         }
+
+                        // With include_usage the last chunk carries usage and no choices
+                        if (chunk.has("usage") && chunk.get("usage").isJsonObject())
+                        {
+                            usage = parseUsage(chunk.getAsJsonObject("usage"));
+                        }
                     }
                     catch (Exception e)
                     {
@@ -148,10 +161,16 @@ public class OpenAiProvider implements LlmProvider
                 }
             }
 
+            if (usage != null)
+            {
+                callback.onUsage(usage);
+            }
             callback.onComplete(fullResponse.toString());
         }
         catch (IOException e)
         {
+            // Cancelling the call closes the stream under us; that's not an error
+            if (CancellationToken.isCurrentCancelled()) return;
             callback.onError("Connection error: " + e.getMessage());
         }
     }
@@ -162,9 +181,15 @@ public class OpenAiProvider implements LlmProvider
         body.addProperty("model", model != null && !model.isEmpty() ? model : "gpt-4o-mini");
         body.addProperty("max_tokens", 1024);
         body.addProperty("stream", stream);
+        if (stream)
+        {
+            JsonObject streamOptions = new JsonObject();
+            streamOptions.addProperty("include_usage", true);
+            body.add("stream_options", streamOptions);
+        }
 
         JsonArray messagesArr = new JsonArray();
-        for (ChatMessage msg : messages)
+        for (ChatMessage msg : orderForPrefixCache(messages))
         {
             JsonObject m = new JsonObject();
             m.addProperty("role", msg.getRoleString());
@@ -176,16 +201,70 @@ public class OpenAiProvider implements LlmProvider
         return body;
     }
 
+    /**
+     * OpenAI caches the longest prompt prefix it has seen recently. Put the cacheable system
+     * messages first, then the earlier turns, and this turn's context just before the latest
+     * message, so the prefix is identical from one turn to the next.
+     */
+    private static List<ChatMessage> orderForPrefixCache(List<ChatMessage> messages)
+    {
+        List<ChatMessage> stable = new ArrayList<>();
+        List<ChatMessage> context = new ArrayList<>();
+        List<ChatMessage> turns = new ArrayList<>();
+        for (ChatMessage msg : messages)
+        {
+            if (msg.getRole() != ChatMessage.Role.SYSTEM)
+            {
+                turns.add(msg);
+            }
+            else if (msg.isCacheable())
+            {
+                stable.add(msg);
+            }
+            else if (!msg.getContent().isEmpty())
+            {
+                context.add(msg);
+            }
+        }
+
+        List<ChatMessage> ordered = new ArrayList<>(stable);
+        if (turns.isEmpty())
+        {
+            ordered.addAll(context);
+            return ordered;
+        }
+        ordered.addAll(turns.subList(0, turns.size() - 1));
+        ordered.addAll(context);
+        ordered.add(turns.get(turns.size() - 1));
+        return ordered;
+    }
+
+    private static TokenUsage parseUsage(JsonObject usage)
+    {
+        int cached = 0;
+        if (usage.has("prompt_tokens_details") && usage.get("prompt_tokens_details").isJsonObject())
+        {
+            JsonObject details = usage.getAsJsonObject("prompt_tokens_details");
+            if (details.has("cached_tokens"))
+            {
+                cached = details.get("cached_tokens").getAsInt();
+            }
+        }
+        int input = usage.has("prompt_tokens") ? usage.get("prompt_tokens").getAsInt() : 0;
+        int output = usage.has("completion_tokens") ? usage.get("completion_tokens").getAsInt() : 0;
+        return new TokenUsage(input, cached, 0, output);
+    }
+
     private String executeWithRetry(Request request) throws IOException
     {
-        Response response = httpClient.newCall(request).execute();
+        Response response = CancellationToken.track(httpClient.newCall(request)).execute();
 
         // Retry once on 429 or 5xx
         if ((response.code() == 429 || response.code() >= 500) && response.body() != null)
         {
             response.close();
             try { Thread.sleep(1000); } catch (InterruptedException e) {}
-            response = httpClient.newCall(request).execute();
+            response = CancellationToken.track(httpClient.newCall(request)).execute();
         }
 
         if (response.body() == null)
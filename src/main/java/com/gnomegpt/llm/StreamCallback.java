@@ -13,4 +13,9 @@ public interface StreamCallback
 
     /** Called on error. */
     void onError(String error);
+
+    /** Called before {@link #onComplete} if the provider reported token usage. */
+    default void onUsage(TokenUsage usage)
+    {
+    }
 }
@@ -0,0 +1,46 @@
+package com.gnomegpt.llm;
+
+/**
+ * Token counts reported by the provider for one response.
+ */
+public class TokenUsage
+{
+    private final int inputTokens;
+    private final int cachedInputTokens;
+    private final int cacheWriteTokens;
+    private final int outputTokens;
+
+    /**
+     * @param inputTokens       all prompt tokens, including those served from or written to the cache
+     * @param cachedInputTokens prompt tokens read from the provider's prompt cache
+     * @param cacheWriteTokens  prompt tokens written to the cache (Anthropic only)
+     * @param outputTokens      generated tokens
+     */
+    public TokenUsage(int inputTokens, int cachedInputTokens, int cacheWriteTokens, int outputTokens)
+    {
+        this.inputTokens = inputTokens;
+        this.cachedInputTokens = cachedInputTokens;
+        this.cacheWriteTokens = cacheWriteTokens;
+        this.outputTokens = outputTokens;
+    }
+
+    public int getInputTokens()
+    {
+        return inputTokens;
+    }
+
+    public int getCachedInputTokens()
+    {
+        return cachedInputTokens;
+    }
+
+    public int getCacheWriteTokens()
+    {
+        return cacheWriteTokens;
+    }
+
+    public int getOutputTokens()
+    {
+        return outputTokens;
+    }
+}
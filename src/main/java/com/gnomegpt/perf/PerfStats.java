@@ -0,0 +1,315 @@
+package com.gnomegpt.perf;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Rolling latency and throughput samples for each stage of a GnomeGPT answer.
+ * Keeps the last {@value #WINDOW} samples per stage and reports percentiles over them.
+ */
+public class PerfStats
+{
+    private static final int WINDOW = 256;
+
+    /** Stages in the order they happen, so /perf reads top to bottom like a request. */
+    private static final List<String> STAGE_ORDER = Arrays.asList(
+        "total", "context", "query.extract",
+        "ctx.wiki", "wiki.strategy", "wiki.local", "wiki.search", "wiki.pages",
+        "ctx.hiscores", "hiscores", "ctx.calc", "calc.ge",
+        "context.pack", "prompt.build", "llm.ttft", "llm.stream"
+    );
+
+    private final Map<String, Series> timings = new ConcurrentHashMap<>();
+    private final Map<String, Series> rates = new ConcurrentHashMap<>();
+    private final Map<String, HostStats> hosts = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> budgetMisses = new ConcurrentHashMap<>();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong cachedPromptTokens = new AtomicLong();
+    private final AtomicLong cacheWriteTokens = new AtomicLong();
+    private final Map<String, Supplier<String>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Record a stage duration in milliseconds.
+     */
+    public void record(String stage, long millis)
+    {
+        timings.computeIfAbsent(stage, k -> new Series()).add(millis);
+    }
+
+    /**
+     * Record the time elapsed since {@code startNanos} (from {@link System#nanoTime()}).
+     *
+     * @return the elapsed time in milliseconds
+     */
+    public long recordSince(String stage, long startNanos)
+    {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        record(stage, millis);
+        return millis;
+    }
+
+    /**
+     * Record a throughput sample, e.g. tokens per second.
+     */
+    public void recordRate(String name, double value)
+    {
+        rates.computeIfAbsent(name, k -> new Series()).add(Math.round(value));
+    }
+
+    /**
+     * Count a context stage that was left out because the context budget ran out.
+     */
+    public void recordBudgetMiss(String stage)
+    {
+        budgetMisses.computeIfAbsent(stage, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Add one response's prompt tokens, and how many of them came from or went into the provider's
+     * prompt cache.
+     */
+    public void recordPromptTokens(int total, int cached, int written)
+    {
+        promptTokens.addAndGet(total);
+        cachedPromptTokens.addAndGet(cached);
+        cacheWriteTokens.addAndGet(written);
+    }
+
+    /**
+     * Record one HTTP exchange with a host.
+     *
+     * @param failed true for a transport error or non-2xx response
+     * @param cached true if the response came from the HTTP cache without touching the network
+     */
+    public void recordHttp(String host, long millis, boolean failed, boolean cached)
+    {
+        hosts.computeIfAbsent(host, k -> new HostStats()).add(millis, failed, cached);
+    }
+
+    /**
+     * Record a request held back by a host's rate limiter.
+     */
+    public void recordThrottle(String host, long waitedMillis)
+    {
+        hosts.computeIfAbsent(host, k -> new HostStats()).throttled(waitedMillis);
+    }
+
+    /**
+     * Count a host telling us to slow down (429, 503 or MediaWiki maxlag).
+     */
+    public void recordBackOff(String host)
+    {
+        hosts.computeIfAbsent(host, k -> new HostStats()).backOffs.incrementAndGet();
+    }
+
+    /**
+     * Show a cache's statistics in /perf. The supplier is asked for a one-line summary each time.
+     */
+    public void registerCache(String name, Supplier<String> stats)
+    {
+        caches.put(name, stats);
+    }
+
+    public void reset()
+    {
+        timings.clear();
+        rates.clear();
+        hosts.clear();
+        budgetMisses.clear();
+        promptTokens.set(0);
+        cachedPromptTokens.set(0);
+        cacheWriteTokens.set(0);
+    }
+
+    /**
+     * @return a chat-friendly summary of rolling percentiles for every stage seen so far
+     */
+    public String summary()
+    {
+        if (timings.isEmpty() && rates.isEmpty() && hosts.isEmpty())
+        {
+            return "No timings yet. Ask me something first.";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("⏱️ **GnomeGPT Performance** (rolling, last ").append(WINDOW).append(" samples per stage)\n\n");
+
+        Map<String, Series> ordered = new LinkedHashMap<>();
+        for (String stage : STAGE_ORDER)
+        {
+            Series series = timings.get(stage);
+            if (series != null)
+            {
+                ordered.put(stage, series);
+            }
+        }
+        for (Map.Entry<String, Series> entry : timings.entrySet())
+        {
+            ordered.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<String, Series> entry : ordered.entrySet())
+        {
+            Series s = entry.getValue();
+            sb.append("• ").append(entry.getKey()).append(": p50 ").append(formatMs(s.percentile(50)))
+                .append(" | p90 ").append(formatMs(s.percentile(90)))
+                .append(" | p99 ").append(formatMs(s.percentile(99)))
+                .append(" (n=").append(s.count()).append(")\n");
+        }
+
+        for (Map.Entry<String, Series> entry : rates.entrySet())
+        {
+            Series s = entry.getValue();
+            sb.append("• ").append(entry.getKey()).append(": p50 ").append(s.percentile(50))
+                .append(" | p10 ").append(s.percentile(10))
+                .append(" (n=").append(s.count()).append(")\n");
+        }
+
+        long prompt = promptTokens.get();
+        if (prompt > 0)
+        {
+            long cached = cachedPromptTokens.get();
+            sb.append("\n**Prompt cache**: ").append(cached).append(" of ").append(prompt)
+                .append(" prompt tokens (").append(Math.round(cached * 100.0 / prompt)).append("%) served from cache");
+            long written = cacheWriteTokens.get();
+            if (written > 0)
+            {
+                sb.append(", ").append(written).append(" written to it");
+            }
+            sb.append('\n');
+        }
+
+        if (!budgetMisses.isEmpty())
+        {
+            sb.append("\n**Missed context budget**\n");
+            for (Map.Entry<String, AtomicLong> entry : budgetMisses.entrySet())
+            {
+                sb.append("• ").append(entry.getKey()).append(": ").append(entry.getValue().get()).append("×\n");
+            }
+        }
+
+        if (!hosts.isEmpty())
+        {
+            sb.append("\n**HTTP by host**\n");
+            for (Map.Entry<String, HostStats> entry : hosts.entrySet())
+            {
+                HostStats h = entry.getValue();
+                sb.append("• ").append(entry.getKey()).append(": ").append(h.requests()).append(" req")
+                    .append(" | ").append(h.cached()).append(" cached")
+                    .append(" | ").append(h.failed()).append(" failed")
+                    .append(" | p50 ").append(formatMs(h.latency.percentile(50)))
+                    .append(" | p90 ").append(formatMs(h.latency.percentile(90)));
+                if (h.throttled.get() > 0)
+                {
+                    sb.append(" | ").append(h.throttled.get()).append(" throttled (")
+                        .append(formatMs(h.throttledMillis.get())).append(" waited)");
+                }
+                if (h.backOffs.get() > 0)
+                {
+                    sb.append(" | ").append(h.backOffs.get()).append(" back-offs");
+                }
+                sb.append("\n");
+            }
+        }
+
+        if (!caches.isEmpty())
+        {
+            sb.append("\n**Caches**\n");
+            for (Supplier<String> stats : caches.values())
+            {
+                sb.append("• ").append(stats.get()).append("\n");
+            }
+        }
+
+        sb.append("\nType /perf reset to start over.");
+        return sb.toString();
+    }
+
+    static String formatMs(long millis)
+    {
+        if (millis < 0) return "-";
+        if (millis >= 1000) return String.format("%.1fs", millis / 1000.0);
+        return millis + "ms";
+    }
+
+    /**
+     * Request counters and latencies for one host.
+     */
+    private static class HostStats
+    {
+        private final Series latency = new Series();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong cached = new AtomicLong();
+        private final AtomicLong throttled = new AtomicLong();
+        private final AtomicLong throttledMillis = new AtomicLong();
+        private final AtomicLong backOffs = new AtomicLong();
+
+        void add(long millis, boolean isFailure, boolean isCached)
+        {
+            requests.incrementAndGet();
+            if (isFailure) failed.incrementAndGet();
+            if (isCached) cached.incrementAndGet();
+            latency.add(millis);
+        }
+
+        void throttled(long waitedMillis)
+        {
+            throttled.incrementAndGet();
+            throttledMillis.addAndGet(waitedMillis);
+        }
+
+        long requests()
+        {
+            return requests.get();
+        }
+
+        long failed()
+        {
+            return failed.get();
+        }
+
+        long cached()
+        {
+            return cached.get();
+        }
+    }
+
+    /**
+     * Fixed-size ring buffer of samples.
+     */
+    private static class Series
+    {
+        private final long[] samples = new long[WINDOW];
+        private int next = 0;
+        private long total = 0;
+
+        synchronized void add(long value)
+        {
+            samples[next] = value;
+            next = (next + 1) % WINDOW;
+            total++;
+        }
+
+        synchronized long count()
+        {
+            return total;
+        }
+
+        synchronized long percentile(double p)
+        {
+            int size = (int) Math.min(total, WINDOW);
+            if (size == 0) return -1;
+
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int idx = (int) Math.ceil(p / 100.0 * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, idx))];
+        }
+    }
+}
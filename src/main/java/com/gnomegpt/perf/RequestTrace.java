@@ -0,0 +1,143 @@
+package com.gnomegpt.perf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stage timings for a single chat request. Each stage is also fed into the shared
+ * {@link PerfStats} so it shows up in the rolling /perf percentiles.
+ */
+public class RequestTrace
+{
+    private final PerfStats stats;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+    private final List<String> missed = new ArrayList<>();
+    private double tokensPerSecond = -1;
+    private int promptTokens = -1;
+    private int cachedPromptTokens = 0;
+    private int cacheWriteTokens = 0;
+    private int contextTokens = -1;
+    private int contextBudget = -1;
+    private int contextDropped = 0;
+
+    public RequestTrace(PerfStats stats)
+    {
+        this.stats = stats;
+    }
+
+    /**
+     * Record the time elapsed since {@code startNanos} for a stage of this request.
+     */
+    public long mark(String stage, long startNanos)
+    {
+        long millis = stats.recordSince(stage, startNanos);
+        synchronized (stages)
+        {
+            stages.put(stage, millis);
+        }
+        return millis;
+    }
+
+    /**
+     * Note a stage that was still running when the context budget ran out.
+     */
+    public void missed(String stage)
+    {
+        stats.recordBudgetMiss(stage);
+        synchronized (stages)
+        {
+            missed.add(stage);
+        }
+    }
+
+    public void tokensPerSecond(double rate)
+    {
+        tokensPerSecond = rate;
+        stats.recordRate("llm.tokens/s", rate);
+    }
+
+    /**
+     * Record how much of the context token budget the packed context used, and how many candidate
+     * chunks it had to leave out.
+     */
+    public void contextPacked(int tokens, int budget, int dropped)
+    {
+        contextTokens = tokens;
+        contextBudget = budget;
+        contextDropped = dropped;
+        stats.recordRate("context.tokens", tokens);
+        stats.recordRate("context.dropped", dropped);
+    }
+
+    /**
+     * Record how many prompt tokens the provider billed, how many of them it served from its
+     * prompt cache and how many it wrote to it.
+     */
+    public void promptTokens(int total, int cached, int written)
+    {
+        promptTokens = total;
+        cachedPromptTokens = cached;
+        cacheWriteTokens = written;
+        stats.recordPromptTokens(total, cached, written);
+    }
+
+    /**
+     * Record the total time since the request started.
+     */
+    public long finish()
+    {
+        return mark("total", startNanos);
+    }
+
+    /**
+     * @return a one-line breakdown, e.g. "context 820ms · llm.ttft 640ms · 45 tok/s · total 2.9s"
+     */
+    public String format()
+    {
+        StringBuilder sb = new StringBuilder();
+        synchronized (stages)
+        {
+            for (Map.Entry<String, Long> entry : stages.entrySet())
+            {
+                if (entry.getKey().equals("total")) continue;
+                if (sb.length() > 0) sb.append(" · ");
+                sb.append(entry.getKey()).append(' ').append(PerfStats.formatMs(entry.getValue()));
+            }
+            if (contextTokens >= 0)
+            {
+                sb.append(" · ctx ").append(contextTokens).append('/').append(contextBudget).append(" tok");
+                if (contextDropped > 0)
+                {
+                    sb.append(", ").append(contextDropped).append(" dropped");
+                }
+            }
+            if (tokensPerSecond >= 0)
+            {
+                sb.append(" · ").append(Math.round(tokensPerSecond)).append(" tok/s");
+            }
+            if (promptTokens >= 0)
+            {
+                sb.append(" · prompt ").append(promptTokens).append(" tok (")
+                    .append(cachedPromptTokens).append(" cached");
+                if (cacheWriteTokens > 0)
+                {
+                    sb.append(", ").append(cacheWriteTokens).append(" written");
+                }
+                sb.append(')');
+            }
+            if (!missed.isEmpty())
+            {
+                sb.append(" · missed budget: ").append(String.join(", ", missed));
+            }
+            Long total = stages.get("total");
+            if (total != null)
+            {
+                sb.append(" · total ").append(PerfStats.formatMs(total));
+            }
+        }
+        return sb.toString();
+    }
+}
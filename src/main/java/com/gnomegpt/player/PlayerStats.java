@@ -0,0 +1,181 @@
+package com.gnomegpt.player;
+
+/**
+ * An immutable snapshot of a player's hiscores: level, xp and rank per {@link Skill},
+ * held in primitive arrays indexed by skill ordinal.
+ * <p>
+ * Fetched once per request and shared by the money guide, the skill calculator and the prompt.
+ */
+public final class PlayerStats
+{
+    private static final PlayerStats EMPTY = new PlayerStats(null, false, new int[0], new long[0], new int[0]);
+
+    private final String rsn;
+    private final boolean found;
+    // Level 0 means the hiscores didn't include the skill
+    private final int[] levels;
+    private final long[] xp;
+    private final int[] ranks;
+
+    private PlayerStats(String rsn, boolean found, int[] levels, long[] xp, int[] ranks)
+    {
+        this.rsn = rsn;
+        this.found = found;
+        this.levels = levels;
+        this.xp = xp;
+        this.ranks = ranks;
+    }
+
+    /**
+     * @return stats with no data, used when there is no RSN or the lookup failed
+     */
+    public static PlayerStats empty()
+    {
+        return EMPTY;
+    }
+
+    /**
+     * @return a marker for an RSN the hiscores don't know about
+     */
+    public static PlayerStats notFound(String rsn)
+    {
+        return new PlayerStats(rsn, false, new int[0], new long[0], new int[0]);
+    }
+
+    /**
+     * Parse the hiscores "index_lite" CSV: one "rank,level,xp" line per skill in {@link Skill} order,
+     * followed by activity lines that are ignored. Unranked skills come back as "-1,1,-1".
+     */
+    public static PlayerStats fromHiscores(String rsn, String body)
+    {
+        int count = Skill.count();
+        int[] levels = new int[count];
+        long[] xp = new long[count];
+        int[] ranks = new int[count];
+
+        String[] lines = body.split("\n");
+        boolean any = false;
+        for (int i = 0; i < Math.min(lines.length, count); i++)
+        {
+            String[] parts = lines[i].split(",");
+            if (parts.length < 3)
+            {
+                continue;
+            }
+
+            try
+            {
+                int rank = Integer.parseInt(parts[0].trim());
+                int level = Integer.parseInt(parts[1].trim());
+                // Overall xp can pass Integer.MAX_VALUE
+                long skillXp = Long.parseLong(parts[2].trim());
+                ranks[i] = rank;
+                levels[i] = level;
+                xp[i] = skillXp;
+                any = true;
+            }
+            catch (NumberFormatException e)
+            {
+                // skip
+            }
+        }
+
+        return any ? new PlayerStats(rsn, true, levels, xp, ranks) : EMPTY;
+    }
+
+    public String getRsn()
+    {
+        return rsn;
+    }
+
+    /**
+     * @return true if the lookup returned stats
+     */
+    public boolean isFound()
+    {
+        return found;
+    }
+
+    /**
+     * @return true if there is no stats data at all
+     */
+    public boolean isEmpty()
+    {
+        return !found;
+    }
+
+    /**
+     * @return true if the hiscores included this skill
+     */
+    public boolean has(Skill skill)
+    {
+        return found && levels[skill.ordinal()] > 0;
+    }
+
+    /**
+     * @return the skill's level, or 1 if unknown
+     */
+    public int getLevel(Skill skill)
+    {
+        return has(skill) ? levels[skill.ordinal()] : 1;
+    }
+
+    /**
+     * @return the skill's xp, or -1 if unknown or unranked
+     */
+    public long getXp(Skill skill)
+    {
+        return has(skill) ? xp[skill.ordinal()] : -1;
+    }
+
+    /**
+     * @return the skill's rank, or -1 if unknown or unranked
+     */
+    public int getRank(Skill skill)
+    {
+        return has(skill) ? ranks[skill.ordinal()] : -1;
+    }
+
+    /**
+     * Render the stats for the LLM context, e.g.
+     * "Player: Zezima\nTotal Level: 2277 | Total XP: 4.6B\nSkills: Attack: 99, ...".
+     *
+     * @return the rendered stats, a not-found note, or "" if there is nothing to say
+     */
+    public String format()
+    {
+        if (!found)
+        {
+            return rsn != null ? "Player '" + rsn + "' not found on hiscores." : "";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Player: ").append(rsn).append("\n");
+
+        if (has(Skill.OVERALL))
+        {
+            sb.append("Total Level: ").append(getLevel(Skill.OVERALL));
+            sb.append(" | Total XP: ").append(formatXp(getXp(Skill.OVERALL))).append("\n");
+        }
+
+        sb.append("Skills: ");
+        boolean first = true;
+        for (int i = 1; i < levels.length; i++)
+        {
+            if (levels[i] <= 0) continue;
+            if (!first) sb.append(", ");
+            sb.append(Skill.byOrdinal(i).getName()).append(": ").append(levels[i]);
+            first = false;
+        }
+
+        return sb.toString();
+    }
+
+    private static String formatXp(long xp)
+    {
+        if (xp >= 1_000_000_000) return String.format("%.1fB", xp / 1_000_000_000.0);
+        if (xp >= 1_000_000) return String.format("%.1fM", xp / 1_000_000.0);
+        if (xp >= 1_000) return String.format("%.1fK", xp / 1_000.0);
+        return String.valueOf(xp);
+    }
+}
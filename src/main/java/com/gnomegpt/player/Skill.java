@@ -0,0 +1,83 @@
+package com.gnomegpt.player;
+
+/**
+ * Skills in the order the hiscores API lists them, so a skill's ordinal is its line number.
+ */
+public enum Skill
+{
+    OVERALL("Overall"),
+    ATTACK("Attack"),
+    DEFENCE("Defence"),
+    STRENGTH("Strength"),
+    HITPOINTS("Hitpoints"),
+    RANGED("Ranged"),
+    PRAYER("Prayer"),
+    MAGIC("Magic"),
+    COOKING("Cooking"),
+    WOODCUTTING("Woodcutting"),
+    FLETCHING("Fletching"),
+    FISHING("Fishing"),
+    FIREMAKING("Firemaking"),
+    CRAFTING("Crafting"),
+    SMITHING("Smithing"),
+    MINING("Mining"),
+    HERBLORE("Herblore"),
+    AGILITY("Agility"),
+    THIEVING("Thieving"),
+    SLAYER("Slayer"),
+    FARMING("Farming"),
+    RUNECRAFT("Runecraft"),
+    HUNTER("Hunter"),
+    CONSTRUCTION("Construction");
+
+    private static final Skill[] VALUES = values();
+
+    private final String name;
+
+    Skill(String name)
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the skill with this name (case-insensitive), or null if there is none
+     */
+    public static Skill fromName(String name)
+    {
+        if (name == null)
+        {
+            return null;
+        }
+
+        String trimmed = name.trim();
+        for (Skill skill : VALUES)
+        {
+            if (skill.name.equalsIgnoreCase(trimmed))
+            {
+                return skill;
+            }
+        }
+        return null;
+    }
+
+    static Skill byOrdinal(int ordinal)
+    {
+        return VALUES[ordinal];
+    }
+
+    static int count()
+    {
+        return VALUES.length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
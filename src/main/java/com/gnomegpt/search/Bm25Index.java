@@ -0,0 +1,535 @@
+package com.gnomegpt.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full-text index over the wiki pages seen so far, ranked with BM25.
+ * <p>
+ * Opensearch only matches titles, so "what drops the dragon pickaxe" finds nothing useful there;
+ * here it matches pages whose text mentions the item. Pages are added as the wiki client reads
+ * them, and the index is saved to disk as gzipped, delta-encoded postings so it carries over
+ * between sessions. Once it holds {@value #MAX_DOCS} pages, the one read least recently is dropped.
+ * <p>
+ * Pages are tokenised outside the lock, so indexing a long page doesn't hold up searches; only
+ * merging its postings in is locked.
+ * <p>
+ * A page that changes is re-added under a new doc id and its old postings are left as a
+ * tombstone until enough pile up to be worth a compaction.
+ */
+public class Bm25Index
+{
+    private static final Logger log = LoggerFactory.getLogger(Bm25Index.class);
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Title words count as this many occurrences in the body
+    private static final int TITLE_BOOST = 3;
+    private static final int MAX_DOCS = 5000;
+    // Hits scoring below this fraction of the best one are left out
+    private static final double MIN_RELATIVE_SCORE = 0.5;
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path file;
+
+    // All guarded by this. A removed doc keeps its id with a null title until compaction.
+    private final List<String> titles = new ArrayList<>();
+    private long[] revisions = new long[64];
+    private int[] lengths = new int[64];
+    // When each doc was last added or read, as a tick of useClock
+    private long[] lastUsed = new long[64];
+    private long useClock = 0;
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private long totalLength = 0;
+    private int liveDocs = 0;
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    /**
+     * @param file where the index is saved; read the first time the index is used
+     */
+    public Bm25Index(Path file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Index a page, replacing any older revision of it. Re-adding the same revision only marks it
+     * as recently read.
+     */
+    public void add(String title, String content, long revisionId)
+    {
+        String key = title.toLowerCase();
+        synchronized (this)
+        {
+            ensureLoaded();
+            if (touch(key, revisionId))
+            {
+                return;
+            }
+        }
+
+        Map<String, int[]> counts = new HashMap<>();
+        int length = 0;
+        for (String term : tokenize(content))
+        {
+            counts.computeIfAbsent(term, k -> new int[1])[0]++;
+            length++;
+        }
+        for (String term : tokenize(title))
+        {
+            counts.computeIfAbsent(term, k -> new int[1])[0] += TITLE_BOOST;
+            length += TITLE_BOOST;
+        }
+
+        synchronized (this)
+        {
+            // Another thread may have indexed this revision while we were tokenising
+            if (touch(key, revisionId))
+            {
+                return;
+            }
+            Integer existing = docIds.get(key);
+            if (existing != null)
+            {
+                remove(existing);
+            }
+
+            int doc = titles.size();
+            titles.add(title);
+            revisions = grow(revisions, doc);
+            lengths = grow(lengths, doc);
+            lastUsed = grow(lastUsed, doc);
+            revisions[doc] = revisionId;
+            lengths[doc] = length;
+            lastUsed[doc] = ++useClock;
+            docIds.put(key, doc);
+            totalLength += length;
+            liveDocs++;
+            for (Map.Entry<String, int[]> entry : counts.entrySet())
+            {
+                postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(doc, entry.getValue()[0]);
+            }
+
+            while (liveDocs > MAX_DOCS)
+            {
+                remove(leastRecentlyUsed());
+            }
+            if (titles.size() - liveDocs > liveDocs)
+            {
+                compact();
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Mark a doc as just read if this revision of it is already indexed.
+     *
+     * @return whether it was
+     */
+    private boolean touch(String key, long revisionId)
+    {
+        Integer existing = docIds.get(key);
+        if (existing == null || revisions[existing] != revisionId)
+        {
+            return false;
+        }
+        lastUsed[existing] = ++useClock;
+        dirty = true;
+        return true;
+    }
+
+    private int leastRecentlyUsed()
+    {
+        int oldest = -1;
+        for (int doc = 0; doc < titles.size(); doc++)
+        {
+            if (titles.get(doc) != null && (oldest < 0 || lastUsed[doc] < lastUsed[oldest]))
+            {
+                oldest = doc;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * @return titles of up to {@code maxResults} pages matching the query, best first
+     */
+    public synchronized List<String> search(String query, int maxResults)
+    {
+        ensureLoaded();
+        if (liveDocs == 0)
+        {
+            return Collections.emptyList();
+        }
+
+        double avgLength = (double) totalLength / liveDocs;
+        double[] scores = new double[titles.size()];
+        for (String term : new LinkedHashSet<>(tokenize(query)))
+        {
+            Postings p = postings.get(term);
+            if (p == null)
+            {
+                continue;
+            }
+
+            // Tombstoned docs still count toward df; close enough between compactions
+            double idf = Math.log(1 + (liveDocs - p.size + 0.5) / (p.size + 0.5));
+            for (int i = 0; i < p.size; i++)
+            {
+                int doc = p.docs[i];
+                if (titles.get(doc) == null)
+                {
+                    continue;
+                }
+                int tf = p.freqs[i];
+                scores[doc] += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * lengths[doc] / avgLength));
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>();
+        for (int doc = 0; doc < scores.length; doc++)
+        {
+            if (scores[doc] > 0)
+            {
+                ranked.add(doc);
+            }
+        }
+        ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<String> results = new ArrayList<>();
+        for (int doc : ranked)
+        {
+            if (results.size() >= maxResults || scores[doc] < scores[ranked.get(0)] * MIN_RELATIVE_SCORE)
+            {
+                break;
+            }
+            results.add(titles.get(doc));
+        }
+        return results;
+    }
+
+    public synchronized int size()
+    {
+        return loaded ? liveDocs : 0;
+    }
+
+    /**
+     * Write the index to disk if it changed, compacted, through a temp file and an atomic rename.
+     */
+    public synchronized void save()
+    {
+        if (!dirty)
+        {
+            return;
+        }
+        compact();
+
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "index", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp)))))
+            {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(titles.size());
+                for (int doc = 0; doc < titles.size(); doc++)
+                {
+                    out.writeUTF(titles.get(doc));
+                    out.writeLong(revisions[doc]);
+                    writeVarInt(out, lengths[doc]);
+                    out.writeLong(lastUsed[doc]);
+                }
+                out.writeInt(postings.size());
+                for (Map.Entry<String, Postings> entry : postings.entrySet())
+                {
+                    Postings p = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    writeVarInt(out, p.size);
+                    int previous = 0;
+                    for (int i = 0; i < p.size; i++)
+                    {
+                        // Doc ids only ever increase within a posting list
+                        writeVarInt(out, p.docs[i] - previous);
+                        writeVarInt(out, p.freqs[i]);
+                        previous = p.docs[i];
+                    }
+                }
+            }
+
+            try
+            {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+            log.debug("Saved search index: {} pages, {} terms", liveDocs, postings.size());
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to save search index to {}", file, e);
+        }
+    }
+
+    private void ensureLoaded()
+    {
+        if (loaded)
+        {
+            return;
+        }
+        loaded = true;
+
+        if (!Files.isRegularFile(file))
+        {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(file)))))
+        {
+            if (in.readInt() != FORMAT_VERSION)
+            {
+                return;
+            }
+
+            int docs = in.readInt();
+            revisions = new long[Math.max(64, docs)];
+            lengths = new int[Math.max(64, docs)];
+            lastUsed = new long[Math.max(64, docs)];
+            for (int doc = 0; doc < docs; doc++)
+            {
+                String title = in.readUTF();
+                titles.add(title);
+                revisions[doc] = in.readLong();
+                lengths[doc] = readVarInt(in);
+                lastUsed[doc] = in.readLong();
+                useClock = Math.max(useClock, lastUsed[doc]);
+                docIds.put(title.toLowerCase(), doc);
+                totalLength += lengths[doc];
+            }
+            liveDocs = docs;
+
+            int terms = in.readInt();
+            for (int t = 0; t < terms; t++)
+            {
+                String term = in.readUTF();
+                int size = readVarInt(in);
+                Postings p = new Postings(size);
+                int doc = 0;
+                for (int i = 0; i < size; i++)
+                {
+                    doc += readVarInt(in);
+                    p.add(doc, readVarInt(in));
+                }
+                postings.put(term, p);
+            }
+            log.debug("Loaded search index: {} pages, {} terms", liveDocs, postings.size());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.warn("Discarding unreadable search index {}", file, e);
+            titles.clear();
+            docIds.clear();
+            postings.clear();
+            totalLength = 0;
+            liveDocs = 0;
+        }
+    }
+
+    private void remove(int doc)
+    {
+        docIds.remove(titles.get(doc).toLowerCase());
+        titles.set(doc, null);
+        totalLength -= lengths[doc];
+        liveDocs--;
+        dirty = true;
+    }
+
+    /**
+     * Drop tombstoned docs, renumbering the rest in order so posting lists stay sorted.
+     */
+    private void compact()
+    {
+        if (liveDocs == titles.size())
+        {
+            return;
+        }
+
+        int[] newIds = new int[titles.size()];
+        List<String> liveTitles = new ArrayList<>(liveDocs);
+        long[] liveRevisions = new long[Math.max(64, liveDocs)];
+        int[] liveLengths = new int[Math.max(64, liveDocs)];
+        long[] liveLastUsed = new long[Math.max(64, liveDocs)];
+        docIds.clear();
+        for (int doc = 0; doc < titles.size(); doc++)
+        {
+            String title = titles.get(doc);
+            if (title == null)
+            {
+                newIds[doc] = -1;
+                continue;
+            }
+            int id = liveTitles.size();
+            newIds[doc] = id;
+            liveTitles.add(title);
+            liveRevisions[id] = revisions[doc];
+            liveLengths[id] = lengths[doc];
+            liveLastUsed[id] = lastUsed[doc];
+            docIds.put(title.toLowerCase(), id);
+        }
+
+        postings.values().removeIf(p -> p.remap(newIds) == 0);
+        titles.clear();
+        titles.addAll(liveTitles);
+        revisions = liveRevisions;
+        lengths = liveLengths;
+        lastUsed = liveLastUsed;
+    }
+
+    /**
+     * Lowercase words of two or more letters or digits, without stop words, with a plural "s" dropped.
+     */
+    static List<String> tokenize(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++)
+        {
+            char c = i < text.length() ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(c))
+            {
+                word.append(c);
+                continue;
+            }
+            if (word.length() > 1)
+            {
+                String token = word.toString();
+                if (!QueryExtractor.isStopWord(token))
+                {
+                    tokens.add(stem(token));
+                }
+            }
+            word.setLength(0);
+        }
+        return tokens;
+    }
+
+    private static String stem(String word)
+    {
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss"))
+        {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    private static int[] grow(int[] array, int index)
+    {
+        return index < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static long[] grow(long[] array, int index)
+    {
+        return index < array.length ? array : Arrays.copyOf(array, array.length * 2);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Doc ids and term frequencies for one term, in parallel arrays sorted by doc id.
+     */
+    private static class Postings
+    {
+        int[] docs;
+        int[] freqs;
+        int size = 0;
+
+        Postings()
+        {
+            this(4);
+        }
+
+        Postings(int capacity)
+        {
+            docs = new int[Math.max(1, capacity)];
+            freqs = new int[Math.max(1, capacity)];
+        }
+
+        void add(int doc, int freq)
+        {
+            docs = grow(docs, size);
+            freqs = grow(freqs, size);
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        /**
+         * @return the number of postings left after mapping doc ids, dropping those mapped to -1
+         */
+        int remap(int[] newIds)
+        {
+            int kept = 0;
+            for (int i = 0; i < size; i++)
+            {
+                int id = newIds[docs[i]];
+                if (id >= 0)
+                {
+                    docs[kept] = id;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+}
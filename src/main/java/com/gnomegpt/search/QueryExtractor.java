@@ -165,6 +165,23 @@ public class QueryExtractor
         return queries;
     }
 
+    /**
+     * @return true for filler words that say nothing about what the question is about
+     */
+    public static boolean isStopWord(String lowercaseWord)
+    {
+        return STOP_WORDS.contains(lowercaseWord);
+    }
+
+    /**
+     * Split text into lowercase content words, dropping stop words and level references.
+     */
+    public static List<String> terms(String text)
+    {
+        if (text == null) return new ArrayList<>();
+        return extractMeaningfulWords(text.toLowerCase());
+    }
+
     private static List<String> extractMeaningfulWords(String text)
     {
         // Remove level references (keep the context but not "level 50")
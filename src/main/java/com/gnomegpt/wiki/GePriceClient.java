@@ -1,8 +1,7 @@
 package com.gnomegpt.wiki;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.gnomegpt.http.CancellationToken;
+import com.gnomegpt.http.SingleFlight;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -10,11 +9,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.text.NumberFormat;
-import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class GePriceClient
@@ -22,146 +18,272 @@ public class GePriceClient
     private static final Logger log = LoggerFactory.getLogger(GePriceClient.class);
     private static final String PRICES_API = "https://prices.runescape.wiki/api/v1/osrs";
     private static final String USER_AGENT = "GnomeGPT/1.0 (RuneLite Plugin; https://github.com/gnomegpt/gnomegpt)";
-    private static final NumberFormat NUM_FORMAT = NumberFormat.getNumberInstance(Locale.US);
+
+    private static final String LATEST = "latest";
+    private static final String HOURLY = "1h";
+    private static final String TIMESERIES = "timeseries";
+    private static final long VOLUME_REFRESH_MS = 5 * 60_000;
+    // The API updates /latest about once a minute
+    private static final long REFRESH_INTERVAL_MS = 60_000;
+    private static final long MAX_SNAPSHOT_AGE_MS = 5 * 60_000;
+    // Stop refreshing this long after the last price lookup
+    private static final long IDLE_AFTER_MS = 10 * 60_000;
 
     private final OkHttpClient httpClient;
-    private JsonObject mappingById;
-    private volatile boolean mappingLoaded = false;
+    private final ItemMappingStore mappingStore;
+    private final PriceHistory history;
+    private final SingleFlight<String, PriceSnapshot> snapshotFetches = new SingleFlight<>();
+    private final SingleFlight<Integer, PriceTrend> backfills = new SingleFlight<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r ->
+    {
+        Thread t = new Thread(r, "gnomegpt-prices");
+        t.setDaemon(true);
+        return t;
+    });
+    // Loaded from disk or downloaded once, swapped when a recheck finds a new mapping; null until then
+    private volatile ItemIndex items;
+    // Every item's latest price, replaced wholesale on refresh; null until the first fetch
+    private volatile PriceSnapshot snapshot;
+    private volatile long lastUsed;
 
-    public GePriceClient()
+    public GePriceClient(OkHttpClient httpClient, ItemMappingStore mappingStore, PriceHistory history)
     {
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(10, TimeUnit.SECONDS)
-            .build();
+        this.httpClient = httpClient;
+        this.mappingStore = mappingStore;
+        this.history = history;
+        scheduler.scheduleWithFixedDelay(this::refreshIfActive,
+            REFRESH_INTERVAL_MS, REFRESH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the latest prices of the item best matching {@code itemName}, or null if no item
+     * matches; a matched item with no recent trades has neither price set
+     */
+    public PriceQuote quote(String itemName) throws IOException
+    {
+        return quote(itemName, true);
     }
 
-    public String lookup(String itemName) throws IOException
+    /**
+     * Like {@link #quote(String)}, but only for an exact or alias match (plural, dose, "(noted)"),
+     * never a fuzzy one. For callers guessing the item from free text, where a near miss is more
+     * likely an unrelated item than a typo.
+     */
+    public PriceQuote quoteExact(String itemName) throws IOException
     {
-        int itemId = findItemId(itemName);
+        return quote(itemName, false);
+    }
+
+    private PriceQuote quote(String itemName, boolean fuzzy) throws IOException
+    {
+        ensureMappingLoaded();
+        ItemIndex index = items;
+        int itemId = index == null ? -1 : fuzzy ? index.find(itemName) : index.findExact(itemName);
         if (itemId == -1)
         {
-            return "Couldn't find '" + itemName + "' — try the exact in-game name.";
+            return null;
         }
 
-        String url = PRICES_API + "/latest?id=" + itemId;
-        Request request = new Request.Builder()
-            .url(url)
-            .header("User-Agent", USER_AGENT)
-            .get()
-            .build();
+        PriceSnapshot prices = currentSnapshot();
+        return new PriceQuote(itemId, index.getName(itemId),
+            prices.getHigh(itemId), prices.getLow(itemId),
+            prices.getHighTime(itemId), prices.getLowTime(itemId),
+            prices.getVolume(itemId));
+    }
 
-        try (Response response = httpClient.newCall(request).execute())
+    /**
+     * How the item's price has moved. The first call for an item, or one after a long gap, fetches
+     * its hourly history; after that the history is kept current by the bulk volume refresh.
+     *
+     * @return the trend, or null if there is no history for the item
+     */
+    public PriceTrend trend(int itemId)
+    {
+        if (!history.needsBackfill(itemId))
         {
-            if (!response.isSuccessful() || response.body() == null)
+            return history.trend(itemId);
+        }
+
+        try
+        {
+            return backfills.execute(itemId, () ->
             {
-                return "Failed to fetch price data.";
-            }
+                try (Response response = get(TIMESERIES + "?timestep=1h&id=" + itemId))
+                {
+                    history.backfill(itemId, response.body().charStream());
+                }
+                return history.trend(itemId);
+            });
+        }
+        catch (IOException e)
+        {
+            log.debug("Price history fetch failed for item {}", itemId, e);
+            return history.trend(itemId);
+        }
+    }
 
-            String body = response.body().string();
-            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-            JsonObject data = json.getAsJsonObject("data");
+    /**
+     * The snapshot to answer from: the held one while it is fresh enough, otherwise a new fetch,
+     * falling back to the old one if that fails.
+     */
+    private PriceSnapshot currentSnapshot() throws IOException
+    {
+        lastUsed = System.currentTimeMillis();
+        PriceSnapshot current = snapshot;
+        if (current != null && current.ageMillis() < MAX_SNAPSHOT_AGE_MS)
+        {
+            return current;
+        }
 
-            if (data == null || !data.has(String.valueOf(itemId)))
+        try
+        {
+            return snapshotFetches.execute(LATEST, this::fetchSnapshot);
+        }
+        catch (IOException e)
+        {
+            if (current == null)
             {
-                return "No GE data for '" + itemName + "'.";
+                throw e;
             }
+            log.debug("Price refresh failed, answering from a {}s old snapshot", current.ageMillis() / 1000, e);
+            return current;
+        }
+    }
 
-            JsonObject itemData = data.getAsJsonObject(String.valueOf(itemId));
-
-            StringBuilder result = new StringBuilder();
-            result.append("💰 ").append(itemName);
+    private PriceSnapshot fetchSnapshot() throws IOException
+    {
+        PriceSnapshot previous = snapshot;
+        PriceSnapshot fetched;
+        try (Response response = get(LATEST))
+        {
+            fetched = PriceSnapshot.parse(response.body().charStream(), System.currentTimeMillis(), previous);
+        }
 
-            if (itemData.has("high") && !itemData.get("high").isJsonNull())
+        // Hourly volumes move slowly, so they are fetched less often than prices
+        if (fetched.volumeAgeMillis() > VOLUME_REFRESH_MS)
+        {
+            try (Response response = get(HOURLY))
             {
-                result.append("\n  Buy: ").append(formatGp(itemData.get("high").getAsLong())).append(" gp");
+                PriceSnapshot.Hourly hourly = PriceSnapshot.parseHourly(response.body().charStream());
+                fetched = fetched.withVolumes(hourly, System.currentTimeMillis());
+                history.append(hourly);
             }
-
-            if (itemData.has("low") && !itemData.get("low").isJsonNull())
+            catch (IOException e)
             {
-                result.append("\n  Sell: ").append(formatGp(itemData.get("low").getAsLong())).append(" gp");
+                log.debug("Failed to fetch hourly volumes", e);
             }
+        }
 
-            if (itemData.has("highTime") && !itemData.get("highTime").isJsonNull())
-            {
-                long minutesAgo = (System.currentTimeMillis() / 1000 - itemData.get("highTime").getAsLong()) / 60;
-                result.append("\n  Last trade: ").append(minutesAgo).append("m ago");
-            }
+        snapshot = fetched;
+        log.debug("Loaded latest prices for {} items", fetched.size());
+        return fetched;
+    }
+
+    /**
+     * @return a successful response with a body; the caller closes it
+     */
+    private Response get(String endpoint) throws IOException
+    {
+        Request request = new Request.Builder()
+            .url(PRICES_API + "/" + endpoint)
+            .header("User-Agent", USER_AGENT)
+            .get()
+            .build();
 
-            String wikiUrl = "https://oldschool.runescape.wiki/w/" +
-                URLEncoder.encode(itemName.replace(" ", "_"), StandardCharsets.UTF_8.toString());
-            result.append("\n  Wiki: ").append(wikiUrl);
+        Response response = CancellationToken.track(httpClient.newCall(request)).execute();
+        if (!response.isSuccessful() || response.body() == null)
+        {
+            response.close();
+            throw new IOException("Failed to fetch /" + endpoint + ": " + response.code());
+        }
+        return response;
+    }
 
-            return result.toString();
+    /**
+     * Keep the snapshot current while prices are being asked about, and let it go stale once the
+     * player stops, so an idle plugin doesn't poll.
+     */
+    private void refreshIfActive()
+    {
+        PriceSnapshot current = snapshot;
+        if (System.currentTimeMillis() - lastUsed > IDLE_AFTER_MS
+            || (current != null && current.ageMillis() < REFRESH_INTERVAL_MS / 2))
+        {
+            return;
+        }
+
+        try
+        {
+            snapshotFetches.execute(LATEST, this::fetchSnapshot);
+        }
+        catch (IOException e)
+        {
+            log.debug("Scheduled price refresh failed", e);
         }
     }
 
-    private int findItemId(String itemName) throws IOException
+    public void shutdown()
     {
-        ensureMappingLoaded();
+        scheduler.shutdownNow();
+    }
 
-        if (mappingById != null)
+    /**
+     * Load the item mapping and latest prices ahead of the first lookup, e.g. while the player is still typing.
+     */
+    public void warmUp()
+    {
+        try
         {
-            String searchLower = itemName.toLowerCase().trim();
-            for (Map.Entry<String, JsonElement> entry : mappingById.entrySet())
-            {
-                JsonObject item = entry.getValue().getAsJsonObject();
-                if (item.has("name") && item.get("name").getAsString().toLowerCase().equals(searchLower))
-                {
-                    return Integer.parseInt(entry.getKey());
-                }
-            }
-            for (Map.Entry<String, JsonElement> entry : mappingById.entrySet())
-            {
-                JsonObject item = entry.getValue().getAsJsonObject();
-                if (item.has("name"))
-                {
-                    String name = item.get("name").getAsString().toLowerCase();
-                    if (name.contains(searchLower) || searchLower.contains(name))
-                    {
-                        return Integer.parseInt(entry.getKey());
-                    }
-                }
-            }
+            ensureMappingLoaded();
+            currentSnapshot();
         }
+        catch (IOException e)
+        {
+            log.debug("Price warm-up failed", e);
+        }
+    }
 
-        return -1;
+    /**
+     * Load the saved item mapping, or download it if there is none, off the lookup path at startup.
+     */
+    public void loadMapping()
+    {
+        try
+        {
+            ensureMappingLoaded();
+        }
+        catch (IOException e)
+        {
+            log.debug("Item mapping load failed", e);
+        }
     }
 
     private synchronized void ensureMappingLoaded() throws IOException
     {
-        if (mappingLoaded) return;
+        if (items != null) return;
 
-        String url = PRICES_API + "/mapping";
-        Request request = new Request.Builder()
-            .url(url)
-            .header("User-Agent", USER_AGENT)
-            .get()
-            .build();
-
-        try (Response response = httpClient.newCall(request).execute())
+        ItemIndex saved = mappingStore.load();
+        if (saved != null)
         {
-            if (response.isSuccessful() && response.body() != null)
+            items = saved;
+            if (mappingStore.isStale())
             {
-                String body = response.body().string();
-                mappingById = new JsonObject();
-                for (JsonElement el : JsonParser.parseString(body).getAsJsonArray())
-                {
-                    JsonObject item = el.getAsJsonObject();
-                    String id = String.valueOf(item.get("id").getAsInt());
-                    mappingById.add(id, item);
-                }
-                mappingLoaded = true;
-                log.info("Loaded {} item mappings", mappingById.size());
+                scheduler.execute(this::refreshMapping);
             }
+            return;
         }
+        items = mappingStore.fetch(null);
     }
 
-    private String formatGp(long amount)
+    private void refreshMapping()
     {
-        if (amount >= 1_000_000_000) return String.format("%.2fB", amount / 1_000_000_000.0);
-        if (amount >= 1_000_000) return String.format("%.2fM", amount / 1_000_000.0);
-        if (amount >= 1_000) return String.format("%.1fK", amount / 1_000.0);
-        return NUM_FORMAT.format(amount);
+        try
+        {
+            items = mappingStore.fetch(items);
+        }
+        catch (IOException e)
+        {
+            log.debug("Item mapping refresh failed, keeping the saved one", e);
+        }
     }
 }
@@ -1,5 +1,9 @@
 package com.gnomegpt.wiki;
 
+import com.gnomegpt.http.CancellationToken;
+import com.gnomegpt.http.SingleFlight;
+import com.gnomegpt.perf.PerfStats;
+import com.gnomegpt.player.PlayerStats;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -9,9 +13,6 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Fetches player stats from the OSRS Hiscores.
@@ -22,49 +23,48 @@ public class HiscoresClient
     private static final String HISCORES_URL = "https://secure.runescape.com/m=hiscore_oldschool/index_lite.ws";
     private static final String USER_AGENT = "GnomeGPT/1.0 (RuneLite Plugin)";
 
-    private static final String[] SKILL_NAMES = {
-        "Overall", "Attack", "Defence", "Strength", "Hitpoints", "Ranged", "Prayer",
-        "Magic", "Cooking", "Woodcutting", "Fletching", "Fishing", "Firemaking",
-        "Crafting", "Smithing", "Mining", "Herblore", "Agility", "Thieving",
-        "Slayer", "Farming", "Runecraft", "Hunter", "Construction"
-    };
-
     private final OkHttpClient httpClient;
+    private final PerfStats perf;
+    private final SingleFlight<String, PlayerStats> lookups = new SingleFlight<>();
 
-    // Cache to avoid hammering hiscores
-    private String cachedRsn;
-    private String cachedResult;
-    private long cachedAt;
+    // Cache to avoid hammering hiscores, unknown RSNs included; one volatile read gives a consistent
+    // RSN, stats and fetch time
+    private volatile Cached cached;
     private static final long CACHE_TTL_MS = 5 * 60 * 1000; // 5 minutes
 
-    public HiscoresClient()
+    public HiscoresClient(OkHttpClient httpClient, PerfStats perf)
     {
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(10, TimeUnit.SECONDS)
-            .build();
+        this.perf = perf;
+        this.httpClient = httpClient;
     }
 
     /**
-     * Fetch and format player stats. Returns a formatted string for the LLM context,
-     * or empty string if lookup fails.
+     * Fetch a player's stats. Returns {@link PlayerStats#notFound} for an unknown RSN,
+     * or {@link PlayerStats#empty} if there is no RSN or the lookup fails.
      */
-    public String getPlayerStats(String rsn) throws IOException
+    public PlayerStats getPlayerStats(String rsn) throws IOException
     {
         if (rsn == null || rsn.trim().isEmpty())
         {
-            return "";
+            return PlayerStats.empty();
         }
 
         rsn = rsn.trim();
 
         // Check cache
-        if (rsn.equalsIgnoreCase(cachedRsn) && cachedResult != null
-            && (System.currentTimeMillis() - cachedAt) < CACHE_TTL_MS)
+        Cached hit = cached;
+        if (hit != null && rsn.equalsIgnoreCase(hit.stats.getRsn())
+            && (System.currentTimeMillis() - hit.fetchedAt) < CACHE_TTL_MS)
         {
-            return cachedResult;
+            return hit.stats;
         }
 
+        String player = rsn;
+        return lookups.execute(rsn.toLowerCase(), () -> fetch(player));
+    }
+
+    private PlayerStats fetch(String rsn) throws IOException
+    {
         String encoded = URLEncoder.encode(rsn, StandardCharsets.UTF_8.toString());
         String url = HISCORES_URL + "?player=" + encoded;
 
@@ -74,78 +74,41 @@ public class HiscoresClient
             .get()
             .build();
 
-        try (Response response = httpClient.newCall(request).execute())
+        long start = System.nanoTime();
+        try (Response response = CancellationToken.track(httpClient.newCall(request)).execute())
         {
+            perf.recordSince("hiscores", start);
             if (!response.isSuccessful() || response.body() == null)
             {
                 if (response.code() == 404)
                 {
-                    return "Player '" + rsn + "' not found on hiscores.";
-                }
-                return "";
-            }
-
-            String body = response.body().string();
-            String[] lines = body.split("\n");
-
-            Map<String, int[]> stats = new LinkedHashMap<>();
-            for (int i = 0; i < Math.min(lines.length, SKILL_NAMES.length); i++)
-            {
-                String[] parts = lines[i].split(",");
-                if (parts.length >= 3)
-                {
-                    try
-                    {
-                        int rank = Integer.parseInt(parts[0].trim());
-                        int level = Integer.parseInt(parts[1].trim());
-                        int xp = Integer.parseInt(parts[2].trim());
-                        stats.put(SKILL_NAMES[i], new int[]{level, xp});
-                    }
-                    catch (NumberFormatException e)
-                    {
-                        // skip
-                    }
+                    // A mistyped RSN stays unknown; don't ask again on every message
+                    PlayerStats notFound = PlayerStats.notFound(rsn);
+                    cached = new Cached(notFound, System.currentTimeMillis());
+                    return notFound;
                 }
+                return PlayerStats.empty();
             }
 
-            if (stats.isEmpty())
+            PlayerStats result = PlayerStats.fromHiscores(rsn, response.body().string());
+            if (result.isFound())
             {
-                return "";
+                cached = new Cached(result, System.currentTimeMillis());
             }
 
-            StringBuilder sb = new StringBuilder();
-            sb.append("Player: ").append(rsn).append("\n");
-
-            int[] overall = stats.get("Overall");
-            if (overall != null)
-            {
-                sb.append("Total Level: ").append(overall[0]);
-                sb.append(" | Total XP: ").append(formatXp(overall[1])).append("\n");
-            }
-
-            sb.append("Skills: ");
-            boolean first = true;
-            for (Map.Entry<String, int[]> entry : stats.entrySet())
-            {
-                if (entry.getKey().equals("Overall")) continue;
-                if (!first) sb.append(", ");
-                sb.append(entry.getKey()).append(": ").append(entry.getValue()[0]);
-                first = false;
-            }
-
-            String result = sb.toString();
-            cachedRsn = rsn;
-            cachedResult = result;
-            cachedAt = System.currentTimeMillis();
-
             return result;
         }
     }
 
-    private String formatXp(int xp)
+    private static final class Cached
     {
-        if (xp >= 1_000_000) return String.format("%.1fM", xp / 1_000_000.0);
-        if (xp >= 1_000) return String.format("%.1fK", xp / 1_000.0);
-        return String.valueOf(xp);
+        final PlayerStats stats;
+        final long fetchedAt;
+
+        Cached(PlayerStats stats, long fetchedAt)
+        {
+            this.stats = stats;
+            this.fetchedAt = fetchedAt;
+        }
     }
 }
@@ -0,0 +1,294 @@
+package com.gnomegpt.wiki;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves what a player typed to a GE item, built once from the prices API's item mapping.
+ * <p>
+ * Three tiers, tried in order:
+ * <ol>
+ * <li>exact name, case-insensitive ("Shark")</li>
+ * <li>normalized alias: plural, "(noted)" and potion dose ignored, so "sharks", "prayer potion"
+ * and "super restore(2)" all land on one item, preferring the 4-dose potion</li>
+ * <li>fuzzy: names ranked by trigram overlap with a bonus for prefix matches, so "dragon pick"
+ * finds "Dragon pickaxe" rather than whichever item happened to come first</li>
+ * </ol>
+ * The first two are single hash lookups; the third touches only the postings of the query's trigrams.
+ * {@link ItemMappingStore} supplies the ids and names.
+ */
+public class ItemIndex
+{
+    private static final Pattern DOSE = Pattern.compile("\\s*\\((\\d)\\)$");
+    // Below this the best fuzzy match is more likely a different item than a typo
+    private static final double MIN_FUZZY_SCORE = 0.35;
+    private static final double PREFIX_BONUS = 0.25;
+
+    private final int[] ids;
+    private final String[] names;
+    private final Map<Integer, Integer> byId = new HashMap<>();
+    private final Map<String, Integer> exact = new HashMap<>();
+    // Alias -> item index
+    private final Map<String, Integer> aliases = new HashMap<>();
+    private final String[] normalized;
+    private final int[] gramCounts;
+    private final Map<Long, int[]> trigrams = new HashMap<>();
+
+    /**
+     * @param ids   item ids
+     * @param names item names, parallel to ids
+     */
+    public ItemIndex(int[] ids, String[] names)
+    {
+        int n = ids.length;
+        this.ids = ids;
+        this.names = names;
+        normalized = new String[n];
+        gramCounts = new int[n];
+        Map<Long, List<Integer>> postings = new HashMap<>();
+        // Only needed while building: the dose of the item each alias points at (0 if not a potion)
+        Map<String, Integer> aliasDose = new HashMap<>();
+
+        for (int i = 0; i < n; i++)
+        {
+            byId.put(ids[i], i);
+
+            String lower = names[i].toLowerCase().trim();
+            exact.putIfAbsent(lower, i);
+
+            Matcher dose = DOSE.matcher(lower);
+            int doses = dose.find() ? Integer.parseInt(dose.group(1)) : 0;
+            normalized[i] = normalize(lower);
+            addAlias(normalized[i], i, doses, aliasDose);
+
+            long[] grams = grams(normalized[i]);
+            gramCounts[i] = grams.length;
+            for (long gram : grams)
+            {
+                postings.computeIfAbsent(gram, k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for (Map.Entry<Long, List<Integer>> entry : postings.entrySet())
+        {
+            List<Integer> list = entry.getValue();
+            int[] arr = new int[list.size()];
+            for (int j = 0; j < arr.length; j++)
+            {
+                arr[j] = list.get(j);
+            }
+            trigrams.put(entry.getKey(), arr);
+        }
+    }
+
+    public int size()
+    {
+        return ids.length;
+    }
+
+    int getId(int index)
+    {
+        return ids[index];
+    }
+
+    String getNameAt(int index)
+    {
+        return names[index];
+    }
+
+    /**
+     * @return the best matching item id, or -1 if nothing is close enough
+     */
+    public int find(String query)
+    {
+        int index = findIndex(query, true);
+        return index >= 0 ? ids[index] : -1;
+    }
+
+    /**
+     * Like {@link #find}, but only the exact and alias tiers: a typo won't match, and neither will
+     * words that merely share trigrams with an item name.
+     *
+     * @return the matching item id, or -1
+     */
+    public int findExact(String query)
+    {
+        int index = findIndex(query, false);
+        return index >= 0 ? ids[index] : -1;
+    }
+
+    /**
+     * @return the item's name as the GE spells it, or null if unknown
+     */
+    public String getName(int id)
+    {
+        Integer index = byId.get(id);
+        return index != null ? names[index] : null;
+    }
+
+    private int findIndex(String query, boolean fuzzy)
+    {
+        if (query == null)
+        {
+            return -1;
+        }
+        String lower = query.toLowerCase().trim();
+        if (lower.isEmpty())
+        {
+            return -1;
+        }
+
+        Integer hit = exact.get(lower);
+        if (hit != null)
+        {
+            return hit;
+        }
+
+        String key = normalize(lower);
+        hit = aliases.get(key);
+        if (hit != null)
+        {
+            return hit;
+        }
+
+        return fuzzy ? fuzzy(key) : -1;
+    }
+
+    /**
+     * Rank candidates by the Dice coefficient of their trigram sets, plus a bonus when the item
+     * name starts with the query.
+     */
+    private int fuzzy(String key)
+    {
+        long[] grams = grams(key);
+        if (grams.length == 0)
+        {
+            return -1;
+        }
+
+        int[] shared = new int[ids.length];
+        for (long gram : grams)
+        {
+            int[] items = trigrams.get(gram);
+            if (items != null)
+            {
+                for (int item : items)
+                {
+                    shared[item]++;
+                }
+            }
+        }
+
+        int best = -1;
+        double bestScore = MIN_FUZZY_SCORE;
+        for (int i = 0; i < shared.length; i++)
+        {
+            if (shared[i] == 0)
+            {
+                continue;
+            }
+            double score = 2.0 * shared[i] / (grams.length + gramCounts[i]);
+            if (normalized[i].startsWith(key))
+            {
+                score += PREFIX_BONUS;
+            }
+            // Shorter names win ties: "Dragon dagger" over "Dragon dagger(p++)"
+            if (score > bestScore || (score == bestScore && best >= 0 && names[i].length() < names[best].length()))
+            {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private void addAlias(String alias, int index, int doses, Map<String, Integer> aliasDose)
+    {
+        Integer current = aliasDose.get(alias);
+        // Prefer the undosed item, then the most doses, then the first listed
+        if (current == null || (current != 0 && (doses == 0 || doses > current)))
+        {
+            aliases.put(alias, index);
+            aliasDose.put(alias, doses);
+        }
+    }
+
+    /**
+     * Lowercase, drop "(noted)" and a "(4)"-style dose, strip punctuation and fold a plural last word.
+     */
+    static String normalize(String name)
+    {
+        // Hand-rolled rather than regex: this runs on every lookup
+        String s = name.toLowerCase().trim();
+        if (s.endsWith("(noted)"))
+        {
+            s = s.substring(0, s.length() - "(noted)".length()).trim();
+        }
+        int len = s.length();
+        if (len >= 3 && s.charAt(len - 1) == ')' && Character.isDigit(s.charAt(len - 2)) && s.charAt(len - 3) == '(')
+        {
+            s = s.substring(0, len - 3).trim();
+        }
+
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9'))
+            {
+                sb.append(c);
+            }
+            else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ')
+            {
+                sb.append(' ');
+            }
+        }
+        s = sb.toString().trim();
+
+        int lastSpace = s.lastIndexOf(' ');
+        return s.substring(0, lastSpace + 1) + singular(s.substring(lastSpace + 1));
+    }
+
+    private static String singular(String word)
+    {
+        if (word.length() > 4 && word.endsWith("ies"))
+        {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        if (word.length() > 3 && (word.endsWith("ches") || word.endsWith("shes") || word.endsWith("xes")))
+        {
+            return word.substring(0, word.length() - 2);
+        }
+        if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss") && !word.endsWith("us"))
+        {
+            return word.substring(0, word.length() - 1);
+        }
+        return word;
+    }
+
+    /**
+     * @return the distinct trigrams of " text ", packed three 16-bit chars to a long
+     */
+    private static long[] grams(String text)
+    {
+        String padded = " " + text + " ";
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++)
+        {
+            distinct.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+        }
+        long[] grams = new long[distinct.size()];
+        int i = 0;
+        for (long gram : distinct)
+        {
+            grams[i++] = gram;
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,316 @@
+package com.gnomegpt.wiki;
+
+import com.gnomegpt.http.CancellationToken;
+import com.google.gson.stream.JsonReader;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The GE item mapping (id and name of every tradeable item) saved on disk, so a cold start can
+ * resolve item names without waiting on the multi-hundred-KB /mapping download.
+ * <p>
+ * The file is columnar: a header, every id, then every name's UTF-8 bytes back to back with their
+ * end offsets. It is memory-mapped to load. Only ids and names are kept from the download; the
+ * response is streamed, never held as a JSON tree.
+ * <p>
+ * The mapping only changes with game updates, so it is rechecked once it is over
+ * {@value #RECHECK_AFTER_HOURS} hours old, conditionally against the ETag and Last-Modified of
+ * the last download.
+ */
+public class ItemMappingStore
+{
+    private static final Logger log = LoggerFactory.getLogger(ItemMappingStore.class);
+    private static final String MAPPING_URL = "https://prices.runescape.wiki/api/v1/osrs/mapping";
+    private static final String USER_AGENT = "GnomeGPT/1.0 (RuneLite Plugin; https://github.com/gnomegpt/gnomegpt)";
+
+    private static final int RECHECK_AFTER_HOURS = 24;
+    private static final int FORMAT_VERSION = 1;
+    // Header layout: version int, then checkedAt long, which is rewritten in place on a 304
+    private static final int CHECKED_AT_OFFSET = 4;
+
+    private final OkHttpClient httpClient;
+    private final Path file;
+
+    // Validators and check time of the mapping last loaded or downloaded
+    private volatile String etag;
+    private volatile String lastModified;
+    private volatile long checkedAt;
+
+    public ItemMappingStore(OkHttpClient httpClient, Path file)
+    {
+        this.httpClient = httpClient;
+        this.file = file;
+    }
+
+    /**
+     * @return the saved mapping, or null if there is none or it can't be read
+     */
+    public ItemIndex load()
+    {
+        if (!Files.isRegularFile(file))
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != FORMAT_VERSION)
+            {
+                return null;
+            }
+            long savedCheckedAt = buf.getLong();
+            String savedEtag = readString(buf);
+            String savedLastModified = readString(buf);
+
+            int count = buf.getInt();
+            int[] ids = new int[count];
+            buf.asIntBuffer().get(ids);
+            buf.position(buf.position() + count * 4);
+
+            int[] ends = new int[count];
+            buf.asIntBuffer().get(ends);
+            buf.position(buf.position() + count * 4);
+
+            byte[] blob = new byte[count > 0 ? ends[count - 1] : 0];
+            buf.get(blob);
+            String[] names = new String[count];
+            int start = 0;
+            for (int i = 0; i < count; i++)
+            {
+                names[i] = new String(blob, start, ends[i] - start, StandardCharsets.UTF_8);
+                start = ends[i];
+            }
+
+            etag = savedEtag;
+            lastModified = savedLastModified;
+            checkedAt = savedCheckedAt;
+            return new ItemIndex(ids, names);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // A truncated or foreign file underflows the buffer; just download again
+            log.debug("Discarding unreadable item mapping {}", file, e);
+            return null;
+        }
+    }
+
+    public boolean isStale()
+    {
+        return System.currentTimeMillis() - checkedAt > RECHECK_AFTER_HOURS * 60L * 60 * 1000;
+    }
+
+    /**
+     * Download the mapping, or confirm the current one is still up to date.
+     *
+     * @param current the mapping in use, or null to download unconditionally
+     * @return the new mapping, or {@code current} if the server says it hasn't changed
+     */
+    public ItemIndex fetch(ItemIndex current) throws IOException
+    {
+        Request.Builder builder = new Request.Builder()
+            .url(MAPPING_URL)
+            .header("User-Agent", USER_AGENT)
+            .get();
+        if (current != null && etag != null)
+        {
+            builder.header("If-None-Match", etag);
+        }
+        if (current != null && lastModified != null)
+        {
+            builder.header("If-Modified-Since", lastModified);
+        }
+
+        try (Response response = CancellationToken.track(httpClient.newCall(builder.build())).execute())
+        {
+            if (response.code() == 304 && current != null)
+            {
+                checkedAt = System.currentTimeMillis();
+                touch();
+                log.debug("Item mapping unchanged");
+                return current;
+            }
+            if (!response.isSuccessful() || response.body() == null)
+            {
+                throw new IOException("Item mapping request failed: " + response.code());
+            }
+
+            ItemIndex fetched = parse(response.body().charStream());
+            etag = response.header("ETag");
+            lastModified = response.header("Last-Modified");
+            checkedAt = System.currentTimeMillis();
+            save(fetched);
+            log.info("Loaded {} item mappings", fetched.size());
+            return fetched;
+        }
+    }
+
+    /**
+     * Stream the /mapping array, keeping only each item's id and name.
+     */
+    private static ItemIndex parse(Reader body) throws IOException
+    {
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(body))
+        {
+            reader.beginArray();
+            while (reader.hasNext())
+            {
+                int id = -1;
+                String name = null;
+                reader.beginObject();
+                while (reader.hasNext())
+                {
+                    switch (reader.nextName())
+                    {
+                        case "id":
+                            id = reader.nextInt();
+                            break;
+                        case "name":
+                            name = reader.nextString();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (id >= 0 && name != null)
+                {
+                    ids.add(id);
+                    names.add(name);
+                }
+            }
+            reader.endArray();
+        }
+        catch (IllegalStateException | NumberFormatException e)
+        {
+            throw new IOException("Malformed item mapping", e);
+        }
+
+        int[] idArray = new int[ids.size()];
+        for (int i = 0; i < idArray.length; i++)
+        {
+            idArray[i] = ids.get(i);
+        }
+        return new ItemIndex(idArray, names.toArray(new String[0]));
+    }
+
+    private void save(ItemIndex index)
+    {
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "mapping", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+            {
+                int count = index.size();
+                byte[][] encoded = new byte[count][];
+                for (int i = 0; i < count; i++)
+                {
+                    encoded[i] = index.getNameAt(i).getBytes(StandardCharsets.UTF_8);
+                }
+
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(checkedAt);
+                writeString(out, etag);
+                writeString(out, lastModified);
+                out.writeInt(count);
+                for (int i = 0; i < count; i++)
+                {
+                    out.writeInt(index.getId(i));
+                }
+                int end = 0;
+                for (byte[] name : encoded)
+                {
+                    end += name.length;
+                    out.writeInt(end);
+                }
+                for (byte[] name : encoded)
+                {
+                    out.write(name);
+                }
+            }
+
+            try
+            {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to save item mapping to {}", file, e);
+        }
+    }
+
+    /**
+     * Record a successful recheck without rewriting the mapping.
+     */
+    private void touch()
+    {
+        if (!Files.isRegularFile(file))
+        {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
+            buf.putLong(checkedAt).flip();
+            channel.write(buf, CHECKED_AT_OFFSET);
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to update item mapping check time", e);
+        }
+    }
+
+    // Length-prefixed UTF-8, -1 for null; matches DataOutputStream's big-endian ints
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf)
+    {
+        int length = buf.getInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
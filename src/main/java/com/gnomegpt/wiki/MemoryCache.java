@@ -0,0 +1,227 @@
+package com.gnomegpt.wiki;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * In-process LRU cache of strings with per-entry TTLs, bounded by bytes rather than entry count,
+ * so a few long wiki pages can't push out hundreds of search results or vice versa.
+ * <p>
+ * Values over {@value #COMPRESS_OVER_BYTES} bytes can be stored deflated; wikitext-derived
+ * text compresses about 3:1, so the working set fits a small heap. Compression happens
+ * outside the lock, which only guards the index.
+ */
+public class MemoryCache
+{
+    private static final int COMPRESS_OVER_BYTES = 1024;
+    // Rough per-entry cost of the map node, entry object and array headers
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final String name;
+    private final long maxBytes;
+    private final boolean compress;
+    // Epoch millis, for TTLs
+    private final LongSupplier clock;
+
+    // Access-ordered, so iteration starts at the least recently used entry. Guarded by this.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param name     shown in /perf
+     * @param maxBytes byte cap, counting keys, stored values and bookkeeping
+     * @param compress deflate large values
+     */
+    public MemoryCache(String name, long maxBytes, boolean compress)
+    {
+        this(name, maxBytes, compress, System::currentTimeMillis);
+    }
+
+    MemoryCache(String name, long maxBytes, boolean compress, LongSupplier clock)
+    {
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.compress = compress;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the cached value, or null if absent or expired
+     */
+    public String get(String key)
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt < clock.getAsLong())
+            {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null)
+            {
+                misses++;
+                return null;
+            }
+            hits++;
+        }
+        return entry.decode();
+    }
+
+    public void put(String key, String value, long ttlMillis)
+    {
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        long expiresAt = clock.getAsLong() + ttlMillis;
+        Entry entry = compress && raw.length > COMPRESS_OVER_BYTES
+            ? Entry.deflated(raw, expiresAt)
+            : new Entry(raw, -1, expiresAt);
+        long size = sizeOf(key, entry);
+        if (size > maxBytes)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            remove(key);
+            entries.put(key, entry);
+            bytes += size;
+
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while (bytes > maxBytes && it.hasNext())
+            {
+                Map.Entry<String, Entry> eldest = it.next();
+                it.remove();
+                bytes -= sizeOf(eldest.getKey(), eldest.getValue());
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized void clear()
+    {
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return bytes held, as counted against the cap
+     */
+    synchronized long bytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return a one-line summary for /perf, e.g. "412 entries, 3.1 MB of 8.0 MB | 87% hits (1,204/1,380) | 12 evicted"
+     */
+    public synchronized String stats()
+    {
+        long lookups = hits + misses;
+        return name + ": " + entries.size() + " entries, " + formatMb(bytes) + " of " + formatMb(maxBytes)
+            + " | " + (lookups > 0 ? Math.round(hits * 100.0 / lookups) : 0) + "% hits (" + hits + "/" + lookups + ")"
+            + " | " + evictions + " evicted";
+    }
+
+    private void remove(String key)
+    {
+        Entry previous = entries.remove(key);
+        if (previous != null)
+        {
+            bytes -= sizeOf(key, previous);
+        }
+    }
+
+    private static long sizeOf(String key, Entry entry)
+    {
+        return ENTRY_OVERHEAD_BYTES + 2L * key.length() + entry.data.length;
+    }
+
+    private static String formatMb(long bytes)
+    {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static class Entry
+    {
+        final byte[] data;
+        // Length before compression, or -1 if stored as-is
+        final int rawLength;
+        final long expiresAt;
+
+        Entry(byte[] data, int rawLength, long expiresAt)
+        {
+            this.data = data;
+            this.rawLength = rawLength;
+            this.expiresAt = expiresAt;
+        }
+
+        static Entry deflated(byte[] raw, long expiresAt)
+        {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try
+            {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+                byte[] buf = new byte[4096];
+                while (!deflater.finished())
+                {
+                    out.write(buf, 0, deflater.deflate(buf));
+                }
+                byte[] packed = out.toByteArray();
+                return packed.length < raw.length ? new Entry(packed, raw.length, expiresAt) : new Entry(raw, -1, expiresAt);
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+
+        String decode()
+        {
+            if (rawLength < 0)
+            {
+                return new String(data, StandardCharsets.UTF_8);
+            }
+
+            Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(data);
+                byte[] raw = new byte[rawLength];
+                int n = 0;
+                while (n < rawLength && !inflater.finished())
+                {
+                    n += inflater.inflate(raw, n, rawLength - n);
+                }
+                return new String(raw, 0, n, StandardCharsets.UTF_8);
+            }
+            catch (DataFormatException e)
+            {
+                // Only ever fed our own deflate output
+                throw new IllegalStateException(e);
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+    }
+}
@@ -3,7 +3,12 @@ package com.gnomegpt.wiki;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.gnomegpt.http.CancellationToken;
+import com.gnomegpt.http.SingleFlight;
+import com.gnomegpt.perf.PerfStats;
+import com.gnomegpt.search.Bm25Index;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -14,27 +19,102 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Set;
 
 public class OsrsWikiClient
 {
     private static final Logger log = LoggerFactory.getLogger(OsrsWikiClient.class);
     private static final String WIKI_API = "https://oldschool.runescape.wiki/api.php";
     private static final String USER_AGENT = "GnomeGPT/1.0 (RuneLite Plugin; https://github.com/gnomegpt/gnomegpt)";
-    private static final int MAX_CONTENT_LENGTH = 3000;
+    // Safety cap per page; ContextPacker picks which sections of it reach the prompt, so long
+    // strategy pages are kept whole enough for their later sections to be found
+    private static final int MAX_CONTENT_LENGTH = 40000;
+    // The API's limit for titles= on one query
+    private static final int MAX_TITLES_PER_REQUEST = 50;
+    private static final long SEARCH_TTL_MS = 10 * 60 * 1000;
+    // How long a title the wiki said doesn't exist is taken at its word
+    private static final long MISSING_TTL_MS = 60 * 60 * 1000;
+    // Page content plus the latest revision id
+    private static final String CONTENT_PROPS = "prop=revisions|info&rvprop=content|ids&rvslots=main";
 
     private final OkHttpClient httpClient;
+    private final WikiPageCache pageCache;
+    // Search results (as page titles) and page text for this session, in front of the disk cache
+    private final MemoryCache memory;
+    // Full text of every page read, for questions opensearch's title matching can't answer
+    private final Bm25Index index;
+    // Lets probes for pages that usually don't exist skip the request
+    private final WikiTitleFilter titleFilter;
+    private final PerfStats perf;
 
-    public OsrsWikiClient()
+    // Identical lookups in flight at once share one request
+    private final SingleFlight<String, List<String>> searches = new SingleFlight<>();
+    private final SingleFlight<String, List<WikiPage>> pageSearches = new SingleFlight<>();
+    private final SingleFlight<String, List<String>> titleSearches = new SingleFlight<>();
+    private final SingleFlight<List<String>, Map<String, WikiPage>> pageFetches = new SingleFlight<>();
+
+    public OsrsWikiClient(OkHttpClient httpClient, WikiPageCache pageCache, MemoryCache memory, Bm25Index index,
+                          WikiTitleFilter titleFilter, PerfStats perf)
     {
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(10, TimeUnit.SECONDS)
-            .build();
+        this.titleFilter = titleFilter;
+        this.perf = perf;
+        this.httpClient = httpClient;
+        this.pageCache = pageCache;
+        this.memory = memory;
+        this.index = index;
+    }
+
+    /**
+     * Find pages in the local full-text index, without searching the wiki.
+     *
+     * @return titles of matching pages, best first
+     */
+    public List<String> searchLocal(String query, int maxResults)
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return index.search(query, maxResults);
+        }
+        finally
+        {
+            perf.recordSince("wiki.local", start);
+        }
     }
 
     public List<String> search(String query, int maxResults) throws IOException
+    {
+        String key = "opensearch|" + maxResults + "|" + query.toLowerCase().trim();
+        String cached = memory.get(key);
+        if (cached != null)
+        {
+            return splitTitles(cached);
+        }
+
+        long start = System.nanoTime();
+        try
+        {
+            List<String> results = searches.execute(key, () -> doSearch(query, maxResults));
+            memory.put(key, String.join("\n", results), SEARCH_TTL_MS);
+            return results;
+        }
+        finally
+        {
+            perf.recordSince("wiki.search", start);
+        }
+    }
+
+    private List<String> doSearch(String query, int maxResults) throws IOException
     {
         String encoded = URLEncoder.encode(query, StandardCharsets.UTF_8.toString());
         String url = WIKI_API + "?action=opensearch&search=" + encoded
@@ -46,124 +126,623 @@ public class OsrsWikiClient
             .get()
             .build();
 
-        try (Response response = httpClient.newCall(request).execute())
+        try (Response response = CancellationToken.track(httpClient.newCall(request)).execute())
         {
-            if (!response.isSuccessful() || response.body() == null)
+            // Throw rather than return nothing, so a throttled or failed search isn't cached as no results
+            JsonElement json = readApiResponse(response, "Wiki search");
+            try
             {
-                return new ArrayList<>();
-            }
-
-            String body = response.body().string();
-            JsonArray arr = JsonParser.parseString(body).getAsJsonArray();
+                JsonArray arr = json.getAsJsonArray();
+                if (arr.size() < 2)
+                {
+                    throw new IOException("Unexpected opensearch response for: " + query);
+                }
 
-            if (arr.size() < 2)
-            {
-                return new ArrayList<>();
+                JsonArray titles = arr.get(1).getAsJsonArray();
+                List<String> results = new ArrayList<>();
+                for (JsonElement el : titles)
+                {
+                    results.add(el.getAsString());
+                }
+                return results;
             }
-
-            JsonArray titles = arr.get(1).getAsJsonArray();
-            List<String> results = new ArrayList<>();
-            for (JsonElement el : titles)
+            catch (IllegalStateException | UnsupportedOperationException e)
             {
-                results.add(el.getAsString());
+                throw new IOException("Malformed opensearch response for: " + query, e);
             }
-            return results;
         }
     }
 
     public String getPageContent(String title) throws IOException
     {
-        String encoded = URLEncoder.encode(title, StandardCharsets.UTF_8.toString());
-        String url = WIKI_API + "?action=query&titles=" + encoded
-            + "&prop=extracts&exintro=false&explaintext=true&format=json";
-
-        Request request = new Request.Builder()
-            .url(url)
-            .header("User-Agent", USER_AGENT)
-            .get()
-            .build();
+        WikiPage page = getPages(Collections.singletonList(title)).get(title);
+        return page != null ? page.getContent() : "";
+    }
 
-        try (Response response = httpClient.newCall(request).execute())
+    /**
+     * Fetch several pages' content in as few requests as possible: up to {@value #MAX_TITLES_PER_REQUEST}
+     * titles per request, following redirects and title normalization.
+     * <p>
+     * Pages in the disk cache are served from it. Stale entries are revalidated together in one
+     * prop=info request, and only pages whose revision changed are downloaded again.
+     * <p>
+     * TextExtracts only returns one whole-page extract per response, so this reads the wikitext
+     * through prop=revisions (which batches) and converts it to plain text locally.
+     *
+     * @return pages keyed by the title they were requested as; missing pages are left out
+     */
+    public Map<String, WikiPage> getPages(Collection<String> titles) throws IOException
+    {
+        long start = System.nanoTime();
+        try
         {
-            if (!response.isSuccessful() || response.body() == null)
+            Map<String, WikiPage> pages = new LinkedHashMap<>();
+            Map<String, WikiPage> stale = new LinkedHashMap<>();
+            List<String> toFetch = new ArrayList<>();
+            for (String title : new LinkedHashSet<>(titles))
             {
-                return "";
+                WikiPage remembered = decodePage(memory.get(pageKey(title)));
+                if (remembered != null)
+                {
+                    pages.put(title, remembered);
+                    continue;
+                }
+
+                WikiPageCache.Entry cached = pageCache.get(title);
+                if (cached == null)
+                {
+                    if (!isKnownMissing(title))
+                    {
+                        toFetch.add(title);
+                    }
+                }
+                else if (cached.isStale())
+                {
+                    stale.put(title, cached.getPage());
+                }
+                else
+                {
+                    remember(title, cached.getPage());
+                    pages.put(title, cached.getPage());
+                }
             }
 
-            String body = response.body().string();
-            JsonObject json = JsonParser.parseString(body).getAsJsonObject();
-            JsonObject pages = json.getAsJsonObject("query").getAsJsonObject("pages");
+            if (!stale.isEmpty())
+            {
+                revalidate(stale, pages, toFetch);
+            }
 
-            for (String key : pages.keySet())
+            for (int i = 0; i < toFetch.size(); i += MAX_TITLES_PER_REQUEST)
             {
-                JsonObject page = pages.getAsJsonObject(key);
-                if (page.has("extract"))
+                List<String> batch = new ArrayList<>(toFetch.subList(i, Math.min(toFetch.size(), i + MAX_TITLES_PER_REQUEST)));
+                Map<String, WikiPage> fetched;
+                try
                 {
-                    String extract = page.get("extract").getAsString();
-                    if (extract.length() > MAX_CONTENT_LENGTH)
+                    fetched = pageFetches.execute(batch, () -> doGetPages(batch));
+                }
+                catch (IOException e)
+                {
+                    if (Collections.disjoint(batch, stale.keySet()))
+                    {
+                        throw e;
+                    }
+                    // Pages that changed since they were cached are still better than nothing
+                    log.debug("Wiki page fetch failed, serving cached copies", e);
+                    for (String title : batch)
                     {
-                        extract = extract.substring(0, MAX_CONTENT_LENGTH) + "\n...[truncated]";
+                        WikiPage old = stale.get(title);
+                        if (old != null)
+                        {
+                            pages.put(title, old);
+                        }
                     }
-                    return extract;
+                    continue;
                 }
+                for (Map.Entry<String, WikiPage> entry : fetched.entrySet())
+                {
+                    pageCache.put(entry.getKey(), entry.getValue());
+                    remember(entry.getKey(), entry.getValue());
+                }
+                pages.putAll(fetched);
             }
-            return "";
+            return pages;
+        }
+        finally
+        {
+            perf.recordSince("wiki.pages", start);
         }
     }
 
-    public String searchAndFetch(String query, int maxResults) throws IOException
+    /**
+     * Check cached pages' revisions against the wiki. Unchanged pages go into {@code pages};
+     * changed or deleted ones are added to {@code toFetch}. If the check itself fails, the stale
+     * copies are served rather than nothing.
+     */
+    private void revalidate(Map<String, WikiPage> stale, Map<String, WikiPage> pages, List<String> toFetch)
     {
-        List<String> titles = search(query, maxResults);
+        Map<String, Long> revisions = new HashMap<>();
+        List<String> titles = new ArrayList<>(stale.keySet());
+        try
+        {
+            for (int i = 0; i < titles.size(); i += MAX_TITLES_PER_REQUEST)
+            {
+                revisions.putAll(latestRevisions(titles.subList(i, Math.min(titles.size(), i + MAX_TITLES_PER_REQUEST))));
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("Wiki revalidation failed, serving cached pages", e);
+            pages.putAll(stale);
+            return;
+        }
+
+        for (Map.Entry<String, WikiPage> entry : stale.entrySet())
+        {
+            Long revision = revisions.get(entry.getKey());
+            if (revision != null && revision == entry.getValue().getRevisionId())
+            {
+                pageCache.put(entry.getKey(), entry.getValue());
+                remember(entry.getKey(), entry.getValue());
+                pages.put(entry.getKey(), entry.getValue());
+            }
+            else
+            {
+                toFetch.add(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return the latest revision id of each title that exists, keyed by the requested title
+     */
+    private Map<String, Long> latestRevisions(List<String> titles) throws IOException
+    {
+        Map<String, Long> result = new HashMap<>();
+        JsonObject query = queryPages("titles=" + URLEncoder.encode(String.join("|", titles), StandardCharsets.UTF_8.toString()),
+            "prop=info");
+        if (query == null)
+        {
+            return result;
+        }
+
+        Map<String, Long> byTitle = new HashMap<>();
+        for (JsonElement el : query.getAsJsonArray("pages"))
+        {
+            JsonObject page = el.getAsJsonObject();
+            if (page.has("lastrevid"))
+            {
+                byTitle.put(page.get("title").getAsString(), page.get("lastrevid").getAsLong());
+            }
+        }
+
+        for (Map.Entry<String, String> entry : resolveTitles(query, titles).entrySet())
+        {
+            Long revision = byTitle.get(entry.getValue());
+            if (revision != null)
+            {
+                result.put(entry.getKey(), revision);
+            }
+        }
+        return result;
+    }
+
+    private Map<String, WikiPage> doGetPages(List<String> titles) throws IOException
+    {
+        Map<String, WikiPage> result = new LinkedHashMap<>();
         if (titles.isEmpty())
         {
-            return "";
+            return result;
         }
 
-        StringBuilder context = new StringBuilder();
+        JsonObject query = queryPages("titles=" + URLEncoder.encode(String.join("|", titles), StandardCharsets.UTF_8.toString()),
+            CONTENT_PROPS);
+        if (query == null)
+        {
+            return result;
+        }
+
+        Map<String, WikiPage> byTitle = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (JsonElement el : query.getAsJsonArray("pages"))
+        {
+            JsonObject json = el.getAsJsonObject();
+            if (json.has("missing") || json.has("invalid"))
+            {
+                missing.add(json.get("title").getAsString());
+                continue;
+            }
+            WikiPage page = toPage(json);
+            if (page != null)
+            {
+                byTitle.put(page.getTitle(), page);
+            }
+        }
+
+        for (Map.Entry<String, String> entry : resolveTitles(query, titles).entrySet())
+        {
+            WikiPage page = byTitle.get(entry.getValue());
+            if (page != null)
+            {
+                result.put(entry.getKey(), page);
+            }
+            else if (missing.contains(entry.getValue()))
+            {
+                memory.put(missingKey(entry.getKey()), "", MISSING_TTL_MS);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Map each requested title through normalization ("abyssal whip" -> "Abyssal whip")
+     * and redirects to the title of the page it landed on.
+     */
+    private static Map<String, String> resolveTitles(JsonObject query, List<String> titles)
+    {
+        Map<String, String> normalized = titleMap(query, "normalized");
+        Map<String, String> redirects = titleMap(query, "redirects");
+        Map<String, String> resolved = new LinkedHashMap<>();
         for (String title : titles)
         {
+            String target = normalized.getOrDefault(title, title);
+            resolved.put(title, redirects.getOrDefault(target, target));
+        }
+        return resolved;
+    }
+
+    /**
+     * Search and fetch content in one round trip, using the search as a generator for the page query.
+     * Prefix search matches what opensearch returns; if it finds nothing, full-text search is tried.
+     *
+     * @return pages in search rank order
+     */
+    public List<WikiPage> searchAndFetch(String query, int maxResults) throws IOException
+    {
+        String searchKey = searchKey(query, maxResults);
+        String recent = memory.get(searchKey);
+        if (recent != null)
+        {
+            // Same question recently: the titles are known, so the pages can come from the cache
+            List<String> titles = splitTitles(recent);
+            Map<String, WikiPage> pages = getPages(titles);
+            List<WikiPage> ordered = new ArrayList<>();
+            for (String title : titles)
+            {
+                WikiPage page = pages.get(title);
+                if (page != null)
+                {
+                    ordered.add(page);
+                }
+            }
+            return ordered;
+        }
+
+        List<WikiPage> pages = pageSearches.execute(searchKey, () -> doSearchAndFetch(query, maxResults));
+        List<String> titles = new ArrayList<>();
+        for (WikiPage page : pages)
+        {
+            pageCache.put(page.getTitle(), page);
+            remember(page.getTitle(), page);
+            titles.add(page.getTitle());
+        }
+        memory.put(searchKey, String.join("\n", titles), SEARCH_TTL_MS);
+        return pages;
+    }
+
+    private List<WikiPage> doSearchAndFetch(String query, int maxResults) throws IOException
+    {
+        List<WikiPage> pages = new ArrayList<>();
+        for (JsonObject json : generatorSearch(query, maxResults, CONTENT_PROPS))
+        {
+            WikiPage page = toPage(json);
+            if (page != null)
+            {
+                pages.add(page);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Search the wiki for page titles only, best match first, with the same prefix-then-full-text
+     * strategy as {@link #searchAndFetch}. For callers that fetch the pages themselves, e.g. to
+     * skip ones they already have.
+     */
+    public List<String> searchTitles(String query, int maxResults) throws IOException
+    {
+        // Shares the remembered title list with searchAndFetch
+        String searchKey = searchKey(query, maxResults);
+        String recent = memory.get(searchKey);
+        if (recent != null)
+        {
+            return splitTitles(recent);
+        }
+
+        List<String> titles = titleSearches.execute(searchKey, () ->
+        {
+            List<String> found = new ArrayList<>();
+            for (JsonObject json : generatorSearch(query, maxResults, "prop=info"))
+            {
+                if (!json.has("missing"))
+                {
+                    found.add(json.get("title").getAsString());
+                }
+            }
+            return found;
+        });
+        memory.put(searchKey, String.join("\n", titles), SEARCH_TTL_MS);
+        return titles;
+    }
+
+    /**
+     * Prefix search on titles, falling back to full-text search if that finds nothing.
+     *
+     * @return the result pages' JSON, best match first
+     */
+    private List<JsonObject> generatorSearch(String query, int maxResults, String props) throws IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            String encoded = URLEncoder.encode(query, StandardCharsets.UTF_8.toString());
+            List<JsonObject> pages = generatorPages("generator=prefixsearch&gpssearch=" + encoded
+                + "&gpslimit=" + maxResults, props);
+            if (pages.isEmpty())
+            {
+                pages = generatorPages("generator=search&gsrsearch=" + encoded
+                    + "&gsrlimit=" + maxResults + "&gsrwhat=text", props);
+            }
+            return pages;
+        }
+        finally
+        {
+            perf.recordSince("wiki.search", start);
+        }
+    }
+
+    private List<JsonObject> generatorPages(String generatorParams, String props) throws IOException
+    {
+        JsonObject query = queryPages(generatorParams, props);
+        if (query == null)
+        {
+            // The search ran and matched nothing; failures throw and are never cached
+            return new ArrayList<>();
+        }
+
+        // Generator results carry their rank as "index"; after redirects are resolved the rank
+        // sits on the redirects entry instead of the target page
+        Map<String, Integer> rank = new HashMap<>();
+        if (query.has("redirects"))
+        {
+            for (JsonElement el : query.getAsJsonArray("redirects"))
+            {
+                JsonObject entry = el.getAsJsonObject();
+                if (entry.has("index"))
+                {
+                    rank.merge(entry.get("to").getAsString(), entry.get("index").getAsInt(), Math::min);
+                }
+            }
+        }
+
+        List<JsonObject> pages = new ArrayList<>();
+        for (JsonElement el : query.getAsJsonArray("pages"))
+        {
+            JsonObject json = el.getAsJsonObject();
+            if (json.has("index"))
+            {
+                rank.merge(json.get("title").getAsString(), json.get("index").getAsInt(), Math::min);
+            }
+            pages.add(json);
+        }
+
+        pages.sort(Comparator.comparingInt(json -> rank.getOrDefault(json.get("title").getAsString(), Integer.MAX_VALUE)));
+        return pages;
+    }
+
+    /**
+     * Run a page query, following redirects.
+     *
+     * @param selector titles=... or generator=... parameters, already encoded
+     * @param props    prop=... parameters, e.g. {@link #CONTENT_PROPS} or just prop=info
+     * @return the "query" object, or null if the wiki answered with no pages
+     * @throws IOException if the request failed, so callers don't mistake it for an empty result
+     */
+    private JsonObject queryPages(String selector, String props) throws IOException
+    {
+        String url = WIKI_API + "?action=query&" + selector + "&" + props
+            + "&redirects=1&format=json&formatversion=2";
+
+        Request request = new Request.Builder()
+            .url(url)
+            .header("User-Agent", USER_AGENT)
+            .get()
+            .build();
+
+        try (Response response = CancellationToken.track(httpClient.newCall(request)).execute())
+        {
+            JsonElement json = readApiResponse(response, "Wiki query");
             try
             {
-                String content = getPageContent(title);
-                if (!content.isEmpty())
+                JsonObject root = json.getAsJsonObject();
+                JsonObject query = root.getAsJsonObject("query");
+                if (query == null)
                 {
-                    context.append("=== ").append(title).append(" ===\n");
-                    context.append(content).append("\n\n");
+                    // A generator that matches nothing answers with no "query" at all
+                    if (!root.has("batchcomplete"))
+                    {
+                        throw new IOException("Wiki query returned no result");
+                    }
+                    return null;
                 }
+                return query.has("pages") ? query : null;
             }
-            catch (IOException e)
+            catch (IllegalStateException | ClassCastException e)
             {
-                log.warn("Failed to fetch wiki page: {}", title, e);
+                throw new IOException("Malformed wiki query response", e);
             }
         }
-        return context.toString();
+    }
+
+    /**
+     * Parse an API response, throwing if it failed. MediaWiki reports errors, maxlag included,
+     * as a 200 with an "error" object and a MediaWiki-API-Error header, so those throw too.
+     */
+    private static JsonElement readApiResponse(Response response, String what) throws IOException
+    {
+        if (!response.isSuccessful() || response.body() == null)
+        {
+            throw new IOException(what + " failed: " + response.code());
+        }
+        String error = response.header("MediaWiki-API-Error");
+        if (error != null)
+        {
+            throw new IOException(what + " failed: " + error);
+        }
+
+        JsonElement json;
+        try
+        {
+            json = JsonParser.parseString(response.body().string());
+        }
+        catch (JsonParseException e)
+        {
+            throw new IOException("Malformed " + what + " response", e);
+        }
+        if (json.isJsonObject() && json.getAsJsonObject().has("error"))
+        {
+            throw new IOException(what + " failed: " + json.getAsJsonObject().get("error"));
+        }
+        return json;
+    }
+
+    private static WikiPage toPage(JsonObject page)
+    {
+        String content = revisionContent(page);
+        if (content == null)
+        {
+            return null;
+        }
+
+        String text = WikitextCleaner.toPlainText(content);
+        if (text.length() > MAX_CONTENT_LENGTH)
+        {
+            text = text.substring(0, MAX_CONTENT_LENGTH) + "\n...[truncated]";
+        }
+        if (text.isEmpty())
+        {
+            return null;
+        }
+
+        long revisionId = page.has("lastrevid") ? page.get("lastrevid").getAsLong() : 0;
+        return new WikiPage(page.get("title").getAsString(), text, revisionId);
+    }
+
+    private static String revisionContent(JsonObject page)
+    {
+        if (page.has("missing") || !page.has("revisions"))
+        {
+            return null;
+        }
+
+        JsonArray revisions = page.getAsJsonArray("revisions");
+        if (revisions.size() == 0)
+        {
+            return null;
+        }
+
+        JsonObject slots = revisions.get(0).getAsJsonObject().getAsJsonObject("slots");
+        if (slots == null || !slots.has("main"))
+        {
+            return null;
+        }
+
+        JsonObject main = slots.getAsJsonObject("main");
+        return main.has("content") ? main.get("content").getAsString() : null;
+    }
+
+    private static Map<String, String> titleMap(JsonObject query, String key)
+    {
+        Map<String, String> map = new HashMap<>();
+        if (query.has(key))
+        {
+            for (JsonElement el : query.getAsJsonArray(key))
+            {
+                JsonObject entry = el.getAsJsonObject();
+                map.put(entry.get("from").getAsString(), entry.get("to").getAsString());
+            }
+        }
+        return map;
     }
 
     /**
      * Try to fetch a boss/monster strategy page directly.
      * Strategy pages are typically at "Boss_name/Strategies".
+     *
+     * @return the page, or null if none was found
      */
-    public String fetchStrategyPage(String bossName) throws IOException
+    public WikiPage fetchStrategyPage(String bossName) throws IOException
     {
-        // Try "Name/Strategies" format
+        // Try "Name/Strategies" format, unless the title filter knows there is no such page
         String strategyTitle = bossName.trim() + "/Strategies";
-        String content = getPageContent(strategyTitle);
-        if (!content.isEmpty())
+        if (titleFilter.mightExist(strategyTitle))
         {
-            return "=== " + strategyTitle + " ===\n" + content + "\n\n";
+            WikiPage page = getPages(Collections.singletonList(strategyTitle)).get(strategyTitle);
+            if (page != null)
+            {
+                return page;
+            }
         }
 
         // Try searching for "boss strategy"
-        List<String> results = search(bossName + " strategy", 1);
-        if (!results.isEmpty())
+        List<WikiPage> results = searchAndFetch(bossName + " strategy", 1);
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * Keep a page in memory until its disk copy would be due for revalidation, and make sure
+     * the search index has this revision of it.
+     */
+    private void remember(String title, WikiPage page)
+    {
+        memory.put(pageKey(title), page.getRevisionId() + "\n" + page.getTitle() + "\n" + page.getContent(),
+            WikiPageCache.REVALIDATE_AFTER_MS);
+        index.add(page.getTitle(), page.getContent(), page.getRevisionId());
+    }
+
+    private static String searchKey(String query, int maxResults)
+    {
+        return "search|" + maxResults + "|" + query.toLowerCase().trim();
+    }
+
+    private boolean isKnownMissing(String title)
+    {
+        return memory.get(missingKey(title)) != null;
+    }
+
+    private static String missingKey(String title)
+    {
+        return "missing|" + WikiPageCache.normalize(title);
+    }
+
+    private static String pageKey(String title)
+    {
+        return "page|" + WikiPageCache.normalize(title);
+    }
+
+    private static WikiPage decodePage(String value)
+    {
+        if (value == null)
         {
-            content = getPageContent(results.get(0));
-            if (!content.isEmpty())
-            {
-                return "=== " + results.get(0) + " ===\n" + content + "\n\n";
-            }
+            return null;
         }
+        int revisionEnd = value.indexOf('\n');
+        int titleEnd = value.indexOf('\n', revisionEnd + 1);
+        return new WikiPage(value.substring(revisionEnd + 1, titleEnd), value.substring(titleEnd + 1),
+            Long.parseLong(value.substring(0, revisionEnd)));
+    }
 
-        return "";
+    private static List<String> splitTitles(String value)
+    {
+        return value.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(value.split("\n")));
     }
 }
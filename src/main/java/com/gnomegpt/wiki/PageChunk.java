@@ -0,0 +1,45 @@
+package com.gnomegpt.wiki;
+
+/**
+ * A piece of a wiki page small enough to be picked for the prompt on its own: one or more
+ * paragraphs from a single section.
+ */
+public class PageChunk
+{
+    private final String heading;
+    private final String text;
+    private final int position;
+
+    public PageChunk(String heading, String text, int position)
+    {
+        this.heading = heading;
+        this.text = text;
+        this.position = position;
+    }
+
+    /**
+     * @return the section heading, or "" for the page's lead
+     */
+    public String getHeading()
+    {
+        return heading;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * @return the chunk's index within its page, for putting chosen chunks back in page order
+     */
+    public int getPosition()
+    {
+        return position;
+    }
+
+    public boolean isLead()
+    {
+        return heading.isEmpty();
+    }
+}
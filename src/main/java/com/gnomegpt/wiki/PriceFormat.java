@@ -0,0 +1,97 @@
+package com.gnomegpt.wiki;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Renders price quotes and trends as text, for chat replies and the LLM context alike.
+ */
+public final class PriceFormat
+{
+    private static final NumberFormat NUM_FORMAT = NumberFormat.getNumberInstance(Locale.US);
+
+    private PriceFormat()
+    {
+    }
+
+    /**
+     * Render a quote, and its trend if known, with the wiki link for the item that matched.
+     *
+     * @param query what the player asked for, used when nothing matched
+     * @param quote the quote, or null if no item matched
+     * @param trend the item's trend, or null to leave it out
+     */
+    public static String describe(String query, PriceQuote quote, PriceTrend trend)
+    {
+        if (quote == null)
+        {
+            return "Couldn't find '" + query + "' — try the exact in-game name.";
+        }
+        if (!quote.hasPrice())
+        {
+            return "No GE data for '" + quote.getItemName() + "'.";
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append("💰 ").append(quote.getItemName());
+        if (quote.getHigh() >= 0)
+        {
+            result.append("\n  Buy: ").append(gp(quote.getHigh())).append(" gp");
+        }
+        if (quote.getLow() >= 0)
+        {
+            result.append("\n  Sell: ").append(gp(quote.getLow())).append(" gp");
+        }
+        if (quote.getHighTime() > 0)
+        {
+            long minutesAgo = (System.currentTimeMillis() / 1000 - quote.getHighTime()) / 60;
+            result.append("\n  Last trade: ").append(minutesAgo).append("m ago");
+        }
+        if (quote.getVolume() >= 0)
+        {
+            result.append("\n  Traded last hour: ").append(NUM_FORMAT.format(quote.getVolume()));
+        }
+        if (trend != null)
+        {
+            appendTrend(result, trend);
+        }
+
+        String wikiUrl = "https://oldschool.runescape.wiki/w/" +
+            URLEncoder.encode(quote.getItemName().replace(" ", "_"), StandardCharsets.UTF_8);
+        result.append("\n  Wiki: ").append(wikiUrl);
+        return result.toString();
+    }
+
+    private static void appendTrend(StringBuilder result, PriceTrend trend)
+    {
+        if (!Double.isNaN(trend.getChange24h()) || !Double.isNaN(trend.getChange7d()))
+        {
+            result.append("\n  Change: ").append(percent(trend.getChange24h())).append(" (24h), ")
+                .append(percent(trend.getChange7d())).append(" (7d)");
+        }
+        if (trend.getAverageDailyVolume() >= 0)
+        {
+            result.append("\n  Avg volume: ").append(NUM_FORMAT.format(trend.getAverageDailyVolume())).append("/day");
+        }
+        if (!Double.isNaN(trend.getVolatility()))
+        {
+            result.append("\n  Volatility: ").append(String.format(Locale.US, "%.1f%%", trend.getVolatility() * 100))
+                .append("/hour over ").append(trend.getHours()).append("h");
+        }
+    }
+
+    private static String percent(double change)
+    {
+        return Double.isNaN(change) ? "n/a" : String.format(Locale.US, "%+.1f%%", change * 100);
+    }
+
+    public static String gp(long amount)
+    {
+        if (amount >= 1_000_000_000) return String.format("%.2fB", amount / 1_000_000_000.0);
+        if (amount >= 1_000_000) return String.format("%.2fM", amount / 1_000_000.0);
+        if (amount >= 1_000) return String.format("%.1fK", amount / 1_000.0);
+        return NUM_FORMAT.format(amount);
+    }
+}
@@ -0,0 +1,449 @@
+package com.gnomegpt.wiki;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Hourly GE price and volume history for the items players have asked about.
+ * <p>
+ * Each item gets a fixed ring of {@value #HOURS} hourly points, seeded once from /timeseries and
+ * then extended by the bulk /1h fetch that already refreshes volumes, so trend queries never
+ * refetch history. The ring keeps running sums of volume and of hourly log returns as points
+ * enter and leave it, which makes average volume and volatility O(1); the 24h and 7d changes
+ * look back at most a day's worth of points.
+ * <p>
+ * At most {@value #MAX_ITEMS} items are tracked, least recently asked about evicted first. The
+ * history is saved to disk on shutdown and read back the first time it is used.
+ */
+public class PriceHistory
+{
+    private static final Logger log = LoggerFactory.getLogger(PriceHistory.class);
+
+    private static final int HOURS = 7 * 24;
+    private static final int HOUR_SECONDS = 3600;
+    private static final int MAX_ITEMS = 256;
+    // A series this far behind is refilled from /timeseries rather than left with a gap
+    private static final int BACKFILL_AFTER_SECONDS = 3 * HOUR_SECONDS;
+    // How far before a 24h or 7d mark a point may be and still stand in for it
+    private static final int PRICE_TOLERANCE_SECONDS = 2 * HOUR_SECONDS;
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path file;
+
+    // Access-ordered, so the eldest entry is the item asked about least recently. Guarded by this.
+    private final LinkedHashMap<Integer, Series> series = new LinkedHashMap<Integer, Series>(64, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Series> eldest)
+        {
+            return size() > MAX_ITEMS;
+        }
+    };
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    /**
+     * @param file where the history is saved; read the first time the history is used
+     */
+    public PriceHistory(Path file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return whether the item has no history yet, or a gap that /timeseries should fill
+     */
+    public synchronized boolean needsBackfill(int itemId)
+    {
+        ensureLoaded();
+        Series s = series.get(itemId);
+        return s == null || s.size == 0
+            || System.currentTimeMillis() / 1000 - s.newestTime() > BACKFILL_AFTER_SECONDS;
+    }
+
+    /**
+     * Add the points of a /timeseries?timestep=1h body that are newer than what is held:
+     * {"data":[{"timestamp":1700000000,"avgHighPrice":150,"avgLowPrice":148,"highPriceVolume":12,...},...]}.
+     */
+    void backfill(int itemId, Reader body) throws IOException
+    {
+        int count = 0;
+        int[] times = new int[HOURS * 3];
+        long[] prices = new long[times.length];
+        long[] volumes = new long[times.length];
+
+        try (JsonReader reader = new JsonReader(body))
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                if (!"data".equals(reader.nextName()))
+                {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginArray();
+                while (reader.hasNext())
+                {
+                    int time = 0;
+                    long high = 0;
+                    long low = 0;
+                    long volume = -1;
+                    reader.beginObject();
+                    while (reader.hasNext())
+                    {
+                        String field = reader.nextName();
+                        if (reader.peek() == JsonToken.NULL)
+                        {
+                            reader.nextNull();
+                            continue;
+                        }
+                        switch (field)
+                        {
+                            case "timestamp":
+                                time = reader.nextInt();
+                                break;
+                            case "avgHighPrice":
+                                high = reader.nextLong();
+                                break;
+                            case "avgLowPrice":
+                                low = reader.nextLong();
+                                break;
+                            case "highPriceVolume":
+                            case "lowPriceVolume":
+                                volume = Math.max(0, volume) + reader.nextLong();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    if (count == times.length)
+                    {
+                        times = Arrays.copyOf(times, count * 2);
+                        prices = Arrays.copyOf(prices, count * 2);
+                        volumes = Arrays.copyOf(volumes, count * 2);
+                    }
+                    times[count] = time;
+                    prices[count] = PriceSnapshot.midpoint(high, low);
+                    volumes[count] = volume;
+                    count++;
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+        }
+        catch (IllegalStateException | NumberFormatException e)
+        {
+            throw new IOException("Malformed timeseries response", e);
+        }
+
+        synchronized (this)
+        {
+            ensureLoaded();
+            Series s = series.computeIfAbsent(itemId, id -> new Series());
+            // Points come oldest first; push ignores any the series already has
+            for (int i = 0; i < count; i++)
+            {
+                s.push(times[i], prices[i], volumes[i]);
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * Extend every tracked item's history with one bulk /1h bucket.
+     */
+    synchronized void append(PriceSnapshot.Hourly hourly)
+    {
+        ensureLoaded();
+        if (hourly.timestamp <= 0)
+        {
+            return;
+        }
+
+        for (Map.Entry<Integer, Series> entry : series.entrySet())
+        {
+            int id = entry.getKey();
+            entry.getValue().push(hourly.timestamp, hourly.getPrice(id), hourly.getVolume(id));
+        }
+        dirty = true;
+    }
+
+    /**
+     * @return the item's trend, or null if there is no history for it
+     */
+    public synchronized PriceTrend trend(int itemId)
+    {
+        ensureLoaded();
+        Series s = series.get(itemId);
+        return s != null && s.size > 0 ? s.trend() : null;
+    }
+
+    /**
+     * Write the history to disk if it changed, through a temp file and an atomic rename.
+     */
+    public synchronized void save()
+    {
+        if (!dirty)
+        {
+            return;
+        }
+
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "history", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp)))))
+            {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(series.size());
+                // Eldest first, so loading in file order restores the eviction order
+                for (Map.Entry<Integer, Series> entry : series.entrySet())
+                {
+                    Series s = entry.getValue();
+                    out.writeInt(entry.getKey());
+                    out.writeInt(s.size);
+                    for (int n = 0; n < s.size; n++)
+                    {
+                        int i = s.index(n);
+                        out.writeInt(s.time[i]);
+                        out.writeLong(s.price[i]);
+                        out.writeLong(s.volume[i]);
+                    }
+                }
+            }
+
+            try
+            {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+            log.debug("Saved price history for {} items", series.size());
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to save price history to {}", file, e);
+        }
+    }
+
+    private void ensureLoaded()
+    {
+        if (loaded)
+        {
+            return;
+        }
+        loaded = true;
+
+        if (!Files.isRegularFile(file))
+        {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(file)))))
+        {
+            if (in.readInt() != FORMAT_VERSION)
+            {
+                return;
+            }
+
+            int items = in.readInt();
+            for (int item = 0; item < items; item++)
+            {
+                int id = in.readInt();
+                int points = in.readInt();
+                Series s = new Series();
+                for (int n = 0; n < points; n++)
+                {
+                    s.push(in.readInt(), in.readLong(), in.readLong());
+                }
+                series.put(id, s);
+            }
+            log.debug("Loaded price history for {} items", series.size());
+        }
+        catch (IOException | RuntimeException e)
+        {
+            log.warn("Discarding unreadable price history {}", file, e);
+            series.clear();
+        }
+    }
+
+    /**
+     * One item's hourly points in a ring, oldest at {@code head}, with running sums over the points
+     * held. Price 0 marks an hour with no trades; volume -1 an hour with no volume data.
+     */
+    private static class Series
+    {
+        // One extra slot so a full ring spans exactly seven days, end to end
+        private static final int CAPACITY = HOURS + 1;
+
+        final int[] time = new int[CAPACITY];
+        final long[] price = new long[CAPACITY];
+        final long[] volume = new long[CAPACITY];
+        // Log return from the previous point, NaN unless both are priced and an hour apart
+        final double[] logReturn = new double[CAPACITY];
+        int head = 0;
+        int size = 0;
+
+        long volumeSum = 0;
+        int volumeCount = 0;
+        double returnSum = 0;
+        double returnSquares = 0;
+        int returnCount = 0;
+
+        int index(int n)
+        {
+            return (head + n) % CAPACITY;
+        }
+
+        int newestTime()
+        {
+            return time[index(size - 1)];
+        }
+
+        void push(int t, long p, long v)
+        {
+            if (size > 0 && t <= newestTime())
+            {
+                return;
+            }
+            while (size > 0 && (size == CAPACITY || t - time[head] > HOURS * HOUR_SECONDS))
+            {
+                evictOldest();
+            }
+
+            double r = Double.NaN;
+            if (size > 0)
+            {
+                int last = index(size - 1);
+                if (price[last] > 0 && p > 0 && t - time[last] == HOUR_SECONDS)
+                {
+                    r = Math.log((double) p / price[last]);
+                }
+            }
+
+            int i = index(size);
+            time[i] = t;
+            price[i] = p;
+            volume[i] = v;
+            logReturn[i] = r;
+            size++;
+
+            if (v >= 0)
+            {
+                volumeSum += v;
+                volumeCount++;
+            }
+            if (!Double.isNaN(r))
+            {
+                returnSum += r;
+                returnSquares += r * r;
+                returnCount++;
+            }
+        }
+
+        private void evictOldest()
+        {
+            if (volume[head] >= 0)
+            {
+                volumeSum -= volume[head];
+                volumeCount--;
+            }
+            head = index(1);
+            size--;
+
+            // The new oldest point's return was relative to the one just dropped
+            if (size > 0 && !Double.isNaN(logReturn[head]))
+            {
+                returnSum -= logReturn[head];
+                returnSquares -= logReturn[head] * logReturn[head];
+                returnCount--;
+                logReturn[head] = Double.NaN;
+            }
+        }
+
+        PriceTrend trend()
+        {
+            int newest = newestTime();
+            long latest = priceNear(newest);
+            double change24h = change(latest, priceNear(newest - 24 * HOUR_SECONDS));
+            double change7d = change(latest, priceNear(newest - HOURS * HOUR_SECONDS));
+
+            long dailyVolume = volumeCount > 0 ? volumeSum * 24 / volumeCount : -1;
+
+            double volatility = Double.NaN;
+            if (returnCount >= 2)
+            {
+                double mean = returnSum / returnCount;
+                volatility = Math.sqrt(Math.max(0, returnSquares / returnCount - mean * mean));
+            }
+            return new PriceTrend(change24h, change7d, dailyVolume, volatility, size);
+        }
+
+        /**
+         * @return the newest traded price at or shortly before {@code t}, or 0 if there is none
+         */
+        private long priceNear(int t)
+        {
+            // Walk in from whichever end of the ring is closer to t
+            if (t - time[head] < newestTime() - t)
+            {
+                long found = 0;
+                for (int n = 0; n < size && time[index(n)] <= t; n++)
+                {
+                    int i = index(n);
+                    if (price[i] > 0 && time[i] >= t - PRICE_TOLERANCE_SECONDS)
+                    {
+                        found = price[i];
+                    }
+                }
+                return found;
+            }
+
+            for (int n = size - 1; n >= 0; n--)
+            {
+                int i = index(n);
+                if (time[i] < t - PRICE_TOLERANCE_SECONDS)
+                {
+                    break;
+                }
+                if (time[i] <= t && price[i] > 0)
+                {
+                    return price[i];
+                }
+            }
+            return 0;
+        }
+
+        private static double change(long now, long then)
+        {
+            return now > 0 && then > 0 ? (double) (now - then) / then : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.gnomegpt.wiki;
+
+/**
+ * One item's latest GE prices, in whole gp. Formatting is left to whoever displays it.
+ */
+public final class PriceQuote
+{
+    private final int itemId;
+    private final String itemName;
+    private final long high;
+    private final long low;
+    private final int highTime;
+    private final int lowTime;
+    private final int volume;
+
+    public PriceQuote(int itemId, String itemName, long high, long low, int highTime, int lowTime, int volume)
+    {
+        this.itemId = itemId;
+        this.itemName = itemName;
+        this.high = high;
+        this.low = low;
+        this.highTime = highTime;
+        this.lowTime = lowTime;
+        this.volume = volume;
+    }
+
+    public int getItemId()
+    {
+        return itemId;
+    }
+
+    /**
+     * @return the name as the GE spells it, which may differ from what was asked for
+     */
+    public String getItemName()
+    {
+        return itemName;
+    }
+
+    /**
+     * @return the latest instant-buy price, or -1 if none
+     */
+    public long getHigh()
+    {
+        return high;
+    }
+
+    /**
+     * @return the latest instant-sell price, or -1 if none
+     */
+    public long getLow()
+    {
+        return low;
+    }
+
+    /**
+     * @return epoch seconds of the latest instant-buy trade, or 0 if unknown
+     */
+    public int getHighTime()
+    {
+        return highTime;
+    }
+
+    /**
+     * @return epoch seconds of the latest instant-sell trade, or 0 if unknown
+     */
+    public int getLowTime()
+    {
+        return lowTime;
+    }
+
+    /**
+     * @return items traded in the last hour, both sides together, or -1 if unknown
+     */
+    public int getVolume()
+    {
+        return volume;
+    }
+
+    public boolean hasPrice()
+    {
+        return high >= 0 || low >= 0;
+    }
+
+    /**
+     * @return what a player would pay right now: the instant-buy price, else the instant-sell one
+     */
+    public long getBuyPrice()
+    {
+        return high >= 0 ? high : low;
+    }
+}
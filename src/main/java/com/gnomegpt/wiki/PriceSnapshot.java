@@ -0,0 +1,351 @@
+package com.gnomegpt.wiki;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Latest GE prices for every item at one point in time, from a single /latest response.
+ * <p>
+ * Held in primitive arrays indexed by item id (ids run to about 30,000, so this is a few hundred
+ * KB) and parsed with a streaming reader, so no per-item objects are built.
+ */
+public final class PriceSnapshot
+{
+    private static final int INITIAL_CAPACITY = 32768;
+
+    // -1 for no trade on that side; timestamps are epoch seconds, 0 if unknown
+    private final long[] high;
+    private final long[] low;
+    private final int[] highTime;
+    private final int[] lowTime;
+    // Items traded in the last hour, -1 if unknown; null until volumes are fetched
+    private final int[] volume;
+    private final int items;
+    private final long fetchedAt;
+    private final long volumesFetchedAt;
+
+    private PriceSnapshot(long[] high, long[] low, int[] highTime, int[] lowTime, int[] volume, int items,
+                          long fetchedAt, long volumesFetchedAt)
+    {
+        this.high = high;
+        this.low = low;
+        this.highTime = highTime;
+        this.lowTime = lowTime;
+        this.volume = volume;
+        this.items = items;
+        this.fetchedAt = fetchedAt;
+        this.volumesFetchedAt = volumesFetchedAt;
+    }
+
+    /**
+     * Parse a /latest body: {"data":{"2":{"high":152,"highTime":1700000000,"low":148,"lowTime":...},...}}.
+     * Any field may be null or missing.
+     *
+     * @param previous snapshot whose volumes to carry over, or null
+     */
+    static PriceSnapshot parse(Reader body, long fetchedAt, PriceSnapshot previous) throws IOException
+    {
+        Columns columns = new Columns(-1, -1, 0, 0);
+        int items = readData(body, columns, (id, field, reader) ->
+        {
+            switch (field)
+            {
+                case "high":
+                    columns.longs[0][id] = reader.nextLong();
+                    break;
+                case "low":
+                    columns.longs[1][id] = reader.nextLong();
+                    break;
+                case "highTime":
+                    columns.longs[2][id] = reader.nextLong();
+                    break;
+                case "lowTime":
+                    columns.longs[3][id] = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+
+        return new PriceSnapshot(columns.longs[0], columns.longs[1], toInts(columns.longs[2]), toInts(columns.longs[3]),
+            previous != null ? previous.volume : null, items,
+            fetchedAt, previous != null ? previous.volumesFetchedAt : 0);
+    }
+
+    /**
+     * @return this snapshot with its hourly volumes taken from {@code hourly}
+     */
+    PriceSnapshot withVolumes(Hourly hourly, long fetchedAt)
+    {
+        return new PriceSnapshot(high, low, highTime, lowTime, toInts(hourly.volume), items, fetchedAt, fetchedAt);
+    }
+
+    /**
+     * Parse a /1h body: {"data":{"2":{"avgHighPrice":150,"highPriceVolume":1234,"avgLowPrice":...,
+     * "lowPriceVolume":567}},"timestamp":1700000000}. The same shape serves /5m.
+     */
+    static Hourly parseHourly(Reader body) throws IOException
+    {
+        Columns columns = new Columns(0, 0, -1);
+        readData(body, columns, (id, field, reader) ->
+        {
+            switch (field)
+            {
+                case "avgHighPrice":
+                    columns.longs[0][id] = reader.nextLong();
+                    break;
+                case "avgLowPrice":
+                    columns.longs[1][id] = reader.nextLong();
+                    break;
+                case "highPriceVolume":
+                case "lowPriceVolume":
+                    columns.longs[2][id] = Math.max(0, columns.longs[2][id]) + reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        });
+        return new Hourly((int) columns.timestamp, columns.longs[0], columns.longs[1], columns.longs[2]);
+    }
+
+    /**
+     * One hour's average prices and traded volume for every item, as /1h reports them.
+     */
+    static final class Hourly
+    {
+        // Epoch seconds of the start of the hour
+        final int timestamp;
+        private final long[] avgHigh;
+        private final long[] avgLow;
+        private final long[] volume;
+
+        private Hourly(int timestamp, long[] avgHigh, long[] avgLow, long[] volume)
+        {
+            this.timestamp = timestamp;
+            this.avgHigh = avgHigh;
+            this.avgLow = avgLow;
+            this.volume = volume;
+        }
+
+        /**
+         * @return the midpoint of the hour's average buy and sell prices, or 0 if nothing traded
+         */
+        long getPrice(int id)
+        {
+            if (id < 0 || id >= avgHigh.length)
+            {
+                return 0;
+            }
+            return midpoint(avgHigh[id], avgLow[id]);
+        }
+
+        /**
+         * @return items traded in the hour, or -1 if unknown
+         */
+        long getVolume(int id)
+        {
+            return id >= 0 && id < volume.length ? volume[id] : -1;
+        }
+    }
+
+    /**
+     * @return the mean of two prices where 0 means missing, or 0 if both are
+     */
+    static long midpoint(long high, long low)
+    {
+        if (high > 0 && low > 0)
+        {
+            return (high + low) / 2;
+        }
+        return Math.max(high, low);
+    }
+
+    /**
+     * Stream the "data" object of a prices response, handing each non-null field of each item to
+     * {@code visitor} after making room for the item's id.
+     *
+     * @return the number of items read
+     */
+    private static int readData(Reader body, Columns columns, FieldVisitor visitor) throws IOException
+    {
+        int items = 0;
+        try (JsonReader reader = new JsonReader(body))
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (name.equals("timestamp") && reader.peek() == JsonToken.NUMBER)
+                {
+                    columns.timestamp = reader.nextLong();
+                    continue;
+                }
+                if (!name.equals("data"))
+                {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginObject();
+                while (reader.hasNext())
+                {
+                    int id;
+                    try
+                    {
+                        id = Integer.parseInt(reader.nextName());
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        reader.skipValue();
+                        continue;
+                    }
+                    if (id < 0)
+                    {
+                        reader.skipValue();
+                        continue;
+                    }
+                    columns.ensureCapacity(id);
+
+                    reader.beginObject();
+                    while (reader.hasNext())
+                    {
+                        String field = reader.nextName();
+                        if (reader.peek() == JsonToken.NULL)
+                        {
+                            reader.nextNull();
+                            continue;
+                        }
+                        visitor.visit(id, field, reader);
+                    }
+                    reader.endObject();
+                    items++;
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+        }
+        catch (IllegalStateException | NumberFormatException e)
+        {
+            throw new IOException("Malformed prices response", e);
+        }
+        return items;
+    }
+
+    private interface FieldVisitor
+    {
+        void visit(int id, String field, JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Parallel long arrays indexed by item id, grown as larger ids turn up.
+     */
+    private static class Columns
+    {
+        final long[][] longs;
+        private final long[] empty;
+        // The response's top-level "timestamp", if any
+        long timestamp;
+
+        /**
+         * @param empty the value of an unset slot, one per column
+         */
+        Columns(long... empty)
+        {
+            this.empty = empty;
+            longs = new long[empty.length][INITIAL_CAPACITY];
+            for (int i = 0; i < longs.length; i++)
+            {
+                Arrays.fill(longs[i], empty[i]);
+            }
+        }
+
+        void ensureCapacity(int id)
+        {
+            int old = longs[0].length;
+            if (id < old)
+            {
+                return;
+            }
+            int size = Math.max(old * 2, id + 1);
+            for (int i = 0; i < longs.length; i++)
+            {
+                longs[i] = Arrays.copyOf(longs[i], size);
+                Arrays.fill(longs[i], old, size, empty[i]);
+            }
+        }
+    }
+
+    private static int[] toInts(long[] values)
+    {
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            ints[i] = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, values[i]));
+        }
+        return ints;
+    }
+
+    public boolean has(int id)
+    {
+        return id >= 0 && id < high.length && (high[id] >= 0 || low[id] >= 0);
+    }
+
+    /**
+     * @return the latest instant-buy price, or -1 if none
+     */
+    public long getHigh(int id)
+    {
+        return id >= 0 && id < high.length ? high[id] : -1;
+    }
+
+    /**
+     * @return the latest instant-sell price, or -1 if none
+     */
+    public long getLow(int id)
+    {
+        return id >= 0 && id < low.length ? low[id] : -1;
+    }
+
+    /**
+     * @return epoch seconds of the latest instant-buy trade, or 0 if unknown
+     */
+    public int getHighTime(int id)
+    {
+        return id >= 0 && id < highTime.length ? highTime[id] : 0;
+    }
+
+    /**
+     * @return epoch seconds of the latest instant-sell trade, or 0 if unknown
+     */
+    public int getLowTime(int id)
+    {
+        return id >= 0 && id < lowTime.length ? lowTime[id] : 0;
+    }
+
+    /**
+     * @return items traded in the last hour, or -1 if unknown
+     */
+    public int getVolume(int id)
+    {
+        return volume != null && id >= 0 && id < volume.length ? volume[id] : -1;
+    }
+
+    public int size()
+    {
+        return items;
+    }
+
+    public long ageMillis()
+    {
+        return System.currentTimeMillis() - fetchedAt;
+    }
+
+    public long volumeAgeMillis()
+    {
+        return System.currentTimeMillis() - volumesFetchedAt;
+    }
+}
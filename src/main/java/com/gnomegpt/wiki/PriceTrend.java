@@ -0,0 +1,63 @@
+package com.gnomegpt.wiki;
+
+/**
+ * How an item's GE price has moved, from its hourly history. Figures that the history is too
+ * short to support are NaN (or -1 for volume).
+ */
+public final class PriceTrend
+{
+    private final double change24h;
+    private final double change7d;
+    private final long averageDailyVolume;
+    private final double volatility;
+    private final int hours;
+
+    public PriceTrend(double change24h, double change7d, long averageDailyVolume, double volatility, int hours)
+    {
+        this.change24h = change24h;
+        this.change7d = change7d;
+        this.averageDailyVolume = averageDailyVolume;
+        this.volatility = volatility;
+        this.hours = hours;
+    }
+
+    /**
+     * @return the fractional price change over the last 24 hours, e.g. 0.05 for +5%, or NaN
+     */
+    public double getChange24h()
+    {
+        return change24h;
+    }
+
+    /**
+     * @return the fractional price change over the last 7 days, or NaN
+     */
+    public double getChange7d()
+    {
+        return change7d;
+    }
+
+    /**
+     * @return the mean items traded per day over the history, or -1 if unknown
+     */
+    public long getAverageDailyVolume()
+    {
+        return averageDailyVolume;
+    }
+
+    /**
+     * @return the standard deviation of hourly log returns, e.g. 0.01 for about 1% an hour, or NaN
+     */
+    public double getVolatility()
+    {
+        return volatility;
+    }
+
+    /**
+     * @return how many hourly points the figures come from
+     */
+    public int getHours()
+    {
+        return hours;
+    }
+}
@@ -0,0 +1,107 @@
+package com.gnomegpt.wiki;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a page's plain text into {@link PageChunk}s along its "== Section ==" headings, then
+ * packs each section's paragraphs into chunks of at most {@value #MAX_CHUNK_CHARS} characters.
+ * A paragraph longer than that is cut at line breaks or, failing that, sentence ends.
+ */
+final class WikiChunker
+{
+    // About 300 tokens: small enough to pick precisely, big enough to keep a table or list together
+    static final int MAX_CHUNK_CHARS = 1200;
+
+    private static final Pattern HEADING = Pattern.compile("^(={2,6})\\s*(.+?)\\s*\\1$");
+
+    private WikiChunker()
+    {
+    }
+
+    static List<PageChunk> split(String content)
+    {
+        List<PageChunk> chunks = new ArrayList<>();
+        String heading = "";
+        StringBuilder section = new StringBuilder();
+
+        for (String line : content.split("\n"))
+        {
+            Matcher m = HEADING.matcher(line.trim());
+            if (m.matches())
+            {
+                addSection(chunks, heading, section.toString());
+                heading = m.group(2);
+                section.setLength(0);
+            }
+            else
+            {
+                section.append(line).append('\n');
+            }
+        }
+        addSection(chunks, heading, section.toString());
+        return Collections.unmodifiableList(chunks);
+    }
+
+    private static void addSection(List<PageChunk> chunks, String heading, String section)
+    {
+        StringBuilder chunk = new StringBuilder();
+        for (String paragraph : section.split("\n\\s*\n"))
+        {
+            paragraph = paragraph.trim();
+            if (paragraph.isEmpty())
+            {
+                continue;
+            }
+
+            for (String piece : fit(paragraph))
+            {
+                if (chunk.length() > 0 && chunk.length() + 2 + piece.length() > MAX_CHUNK_CHARS)
+                {
+                    chunks.add(new PageChunk(heading, chunk.toString(), chunks.size()));
+                    chunk.setLength(0);
+                }
+                if (chunk.length() > 0)
+                {
+                    chunk.append("\n\n");
+                }
+                chunk.append(piece);
+            }
+        }
+        if (chunk.length() > 0)
+        {
+            chunks.add(new PageChunk(heading, chunk.toString(), chunks.size()));
+        }
+    }
+
+    /**
+     * Cut a paragraph into pieces no longer than {@link #MAX_CHUNK_CHARS}.
+     */
+    private static List<String> fit(String paragraph)
+    {
+        List<String> pieces = new ArrayList<>();
+        String rest = paragraph;
+        while (rest.length() > MAX_CHUNK_CHARS)
+        {
+            int cut = rest.lastIndexOf('\n', MAX_CHUNK_CHARS);
+            if (cut < MAX_CHUNK_CHARS / 2)
+            {
+                cut = rest.lastIndexOf(". ", MAX_CHUNK_CHARS) + 1;
+            }
+            if (cut < MAX_CHUNK_CHARS / 2)
+            {
+                cut = MAX_CHUNK_CHARS;
+            }
+            pieces.add(rest.substring(0, cut).trim());
+            rest = rest.substring(cut).trim();
+        }
+        if (!rest.isEmpty())
+        {
+            pieces.add(rest);
+        }
+        return pieces;
+    }
+}
@@ -0,0 +1,62 @@
+package com.gnomegpt.wiki;
+
+import java.util.List;
+
+/**
+ * A fetched wiki page: its title, plain-text content and the revision it was read from.
+ */
+public class WikiPage
+{
+    private final String title;
+    private final String content;
+    private final long revisionId;
+    private volatile List<PageChunk> chunks;
+
+    public WikiPage(String title, String content)
+    {
+        this(title, content, 0);
+    }
+
+    /**
+     * @param revisionId the page's latest revision id, or 0 if unknown
+     */
+    public WikiPage(String title, String content, long revisionId)
+    {
+        this.title = title;
+        this.content = content;
+        this.revisionId = revisionId;
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public String getContent()
+    {
+        return content;
+    }
+
+    /**
+     * @return the revision the content was read from, or 0 if unknown
+     */
+    public long getRevisionId()
+    {
+        return revisionId;
+    }
+
+    /**
+     * @return the page split into section and paragraph chunks, in page order
+     */
+    public List<PageChunk> getChunks()
+    {
+        List<PageChunk> result = chunks;
+        if (result == null)
+        {
+            // Racing threads compute the same list; either copy is fine
+            result = WikiChunker.split(content);
+            chunks = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,321 @@
+package com.gnomegpt.wiki;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wiki page content on disk, one JSON file per page, so popular pages survive client restarts.
+ * <p>
+ * Entries are keyed by normalized title and remember the revision they were read from. After
+ * {@value #REVALIDATE_AFTER_MS} ms an entry is stale: {@link OsrsWikiClient} checks its revision
+ * with a cheap batched prop=info query and only refetches pages that changed. The directory is
+ * kept under a byte cap by evicting the least recently used files; writes go through a temp file
+ * and an atomic rename so a crash never leaves a half-written page behind.
+ */
+public class WikiPageCache
+{
+    private static final Logger log = LoggerFactory.getLogger(WikiPageCache.class);
+
+    static final long REVALIDATE_AFTER_MS = 10 * 60 * 1000;
+    private static final String SUFFIX = ".json";
+
+    private final Path dir;
+    private final long maxBytes;
+
+    // Access-ordered, so iteration starts at the least recently used entry. Guarded by this.
+    private final LinkedHashMap<String, IndexEntry> index = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes = 0;
+    private boolean loaded = false;
+
+    /**
+     * @param dir      directory to keep pages in; created on first write
+     * @param maxBytes byte cap for the directory, 0 to disable the cache
+     */
+    public WikiPageCache(Path dir, long maxBytes)
+    {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled()
+    {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return the cached entry for a title, fresh or stale, or null if there is none
+     */
+    public synchronized Entry get(String title)
+    {
+        if (!isEnabled())
+        {
+            return null;
+        }
+        ensureLoaded();
+
+        String key = key(title);
+        IndexEntry indexed = index.get(key);
+        if (indexed == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            JsonObject json = JsonParser.parseString(new String(Files.readAllBytes(indexed.path), StandardCharsets.UTF_8))
+                .getAsJsonObject();
+            // Modification time doubles as last use, so LRU order survives restarts
+            Files.setLastModifiedTime(indexed.path, FileTime.fromMillis(System.currentTimeMillis()));
+            WikiPage page = new WikiPage(json.get("title").getAsString(), json.get("content").getAsString(),
+                json.get("revid").getAsLong());
+            return new Entry(page, json.get("validatedAt").getAsLong());
+        }
+        catch (Exception e)
+        {
+            log.debug("Dropping unreadable wiki cache entry {}", indexed.path, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Store a page under the title it was requested as, marked as checked against the wiki just now.
+     * Also used to refresh an entry whose revision was found unchanged.
+     */
+    public synchronized void put(String title, WikiPage page)
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+        ensureLoaded();
+
+        JsonObject json = new JsonObject();
+        json.addProperty("key", normalize(title));
+        json.addProperty("title", page.getTitle());
+        json.addProperty("revid", page.getRevisionId());
+        json.addProperty("validatedAt", System.currentTimeMillis());
+        json.addProperty("content", page.getContent());
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        String key = key(title);
+        Path path = dir.resolve(key + SUFFIX);
+        try
+        {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "page", ".tmp");
+            Files.write(tmp, bytes);
+            try
+            {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to cache wiki page {}", title, e);
+            return;
+        }
+
+        IndexEntry previous = index.put(key, new IndexEntry(path, bytes.length));
+        totalBytes += bytes.length - (previous != null ? previous.bytes : 0);
+        evict();
+    }
+
+    private void evict()
+    {
+        Iterator<Map.Entry<String, IndexEntry>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext())
+        {
+            IndexEntry eldest = it.next().getValue();
+            it.remove();
+            totalBytes -= eldest.bytes;
+            delete(eldest.path);
+        }
+    }
+
+    private void remove(String key)
+    {
+        IndexEntry entry = index.remove(key);
+        if (entry != null)
+        {
+            totalBytes -= entry.bytes;
+            delete(entry.path);
+        }
+    }
+
+    /**
+     * Build the index from the files on disk the first time the cache is used, oldest first.
+     * Only file names, sizes and times are read here, not the pages themselves.
+     */
+    private void ensureLoaded()
+    {
+        if (loaded)
+        {
+            return;
+        }
+        loaded = true;
+
+        if (!Files.isDirectory(dir))
+        {
+            return;
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir))
+        {
+            for (Path path : stream)
+            {
+                String name = path.getFileName().toString();
+                if (name.endsWith(".tmp"))
+                {
+                    // Left over from a crash mid-write
+                    delete(path);
+                }
+                else if (name.endsWith(SUFFIX))
+                {
+                    files.add(path);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to read wiki cache directory {}", dir, e);
+            return;
+        }
+
+        files.sort(Comparator.comparingLong(WikiPageCache::lastModified));
+        for (Path path : files)
+        {
+            try
+            {
+                long size = Files.size(path);
+                String name = path.getFileName().toString();
+                // Files are named by key, so the index can be rebuilt without reading them
+                index.put(name.substring(0, name.length() - SUFFIX.length()), new IndexEntry(path, size));
+                totalBytes += size;
+            }
+            catch (IOException e)
+            {
+                delete(path);
+            }
+        }
+        evict();
+        log.debug("Wiki cache: {} pages, {} bytes", index.size(), totalBytes);
+    }
+
+    /**
+     * Titles are case-insensitive here and treat underscores as spaces, so "zulrah/strategies"
+     * and "Zulrah/Strategies" share an entry.
+     */
+    static String normalize(String title)
+    {
+        return title.trim().replace('_', ' ').replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    private static String key(String title)
+    {
+        return hash(normalize(title));
+    }
+
+    private static String hash(String key)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest)
+            {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long lastModified(Path path)
+    {
+        try
+        {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+        catch (IOException e)
+        {
+            return 0;
+        }
+    }
+
+    private static void delete(Path path)
+    {
+        try
+        {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to delete {}", path, e);
+        }
+    }
+
+    /**
+     * A cached page and when its revision was last confirmed current.
+     */
+    public static class Entry
+    {
+        private final WikiPage page;
+        private final long validatedAt;
+
+        Entry(WikiPage page, long validatedAt)
+        {
+            this.page = page;
+            this.validatedAt = validatedAt;
+        }
+
+        public WikiPage getPage()
+        {
+            return page;
+        }
+
+        public boolean isStale()
+        {
+            return System.currentTimeMillis() - validatedAt > REVALIDATE_AFTER_MS;
+        }
+    }
+
+    private static class IndexEntry
+    {
+        final Path path;
+        final long bytes;
+
+        IndexEntry(Path path, long bytes)
+        {
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.gnomegpt.wiki;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bloom filter over every main-namespace title on the wiki (redirects included), so probes for
+ * pages that usually don't exist, like "Goblin/Strategies", can be skipped without a request.
+ * <p>
+ * Built from list=allpages on a low-priority background thread, one page a second and bypassing
+ * the HTTP cache so live questions keep most of the wiki rate limit and their cached responses,
+ * and saved to disk; rebuilt once it is over {@value #REBUILD_AFTER_DAYS} days old. Until the first build finishes every title "might exist".
+ * Pages created since the last build read as missing until the next one, which for strategy
+ * probes only means falling back to search.
+ */
+public class WikiTitleFilter
+{
+    private static final Logger log = LoggerFactory.getLogger(WikiTitleFilter.class);
+    private static final String WIKI_API = "https://oldschool.runescape.wiki/api.php";
+    private static final String USER_AGENT = "GnomeGPT/1.0 (RuneLite Plugin; https://github.com/gnomegpt/gnomegpt)";
+
+    private static final int REBUILD_AFTER_DAYS = 7;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final int FORMAT_VERSION = 1;
+    private static final long PAGE_INTERVAL_MS = 1000;
+    private static final CacheControl NO_CACHE = new CacheControl.Builder().noCache().noStore().build();
+
+    private final OkHttpClient httpClient;
+    private final Path file;
+
+    // Replaced wholesale on load or rebuild, never mutated once published
+    private volatile Bloom bloom;
+
+    public WikiTitleFilter(OkHttpClient httpClient, Path file)
+    {
+        this.httpClient = httpClient;
+        this.file = file;
+    }
+
+    /**
+     * @return false only if the title is definitely not a wiki page (as of the last build)
+     */
+    public boolean mightExist(String title)
+    {
+        Bloom current = bloom;
+        return current == null || current.mightContain(WikiPageCache.normalize(title));
+    }
+
+    /**
+     * Load the saved filter, and rebuild it from the wiki if there is none or it is too old.
+     * Takes a few minutes of sequential requests when it rebuilds, so run it on its own thread;
+     * interrupting the thread abandons the rebuild.
+     */
+    public void refreshIfStale()
+    {
+        Bloom saved = bloom != null ? bloom : load();
+        if (saved != null)
+        {
+            bloom = saved;
+            if (System.currentTimeMillis() - saved.builtAt < REBUILD_AFTER_DAYS * 24L * 60 * 60 * 1000)
+            {
+                return;
+            }
+        }
+
+        try
+        {
+            List<String> titles = fetchAllTitles();
+            if (titles == null)
+            {
+                return;
+            }
+
+            Bloom built = new Bloom(titles.size(), System.currentTimeMillis());
+            for (String title : titles)
+            {
+                built.add(WikiPageCache.normalize(title));
+            }
+            bloom = built;
+            save(built);
+            log.debug("Built wiki title filter from {} titles", titles.size());
+        }
+        catch (IOException e)
+        {
+            log.debug("Failed to build wiki title filter", e);
+        }
+    }
+
+    /**
+     * @return every main-namespace title, or null if interrupted part way
+     */
+    private List<String> fetchAllTitles() throws IOException
+    {
+        List<String> titles = new ArrayList<>();
+        String from = null;
+        do
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                return null;
+            }
+
+            String url = WIKI_API + "?action=query&list=allpages&apnamespace=0&aplimit=max&format=json&formatversion=2"
+                + (from != null ? "&apcontinue=" + URLEncoder.encode(from, StandardCharsets.UTF_8.toString()) : "");
+            Request request = new Request.Builder()
+                .url(url)
+                .header("User-Agent", USER_AGENT)
+                // Hundreds of one-off pages; keep them out of the HTTP cache live answers rely on
+                .cacheControl(NO_CACHE)
+                .get()
+                .build();
+
+            try (Response response = httpClient.newCall(request).execute())
+            {
+                if (!response.isSuccessful() || response.body() == null)
+                {
+                    throw new IOException("allpages request failed: " + response.code());
+                }
+
+                JsonObject json = JsonParser.parseString(response.body().string()).getAsJsonObject();
+                for (JsonElement el : json.getAsJsonObject("query").getAsJsonArray("allpages"))
+                {
+                    titles.add(el.getAsJsonObject().get("title").getAsString());
+                }
+                from = json.has("continue") ? json.getAsJsonObject("continue").get("apcontinue").getAsString() : null;
+            }
+
+            if (from != null && !pause())
+            {
+                return null;
+            }
+        }
+        while (from != null);
+        return titles;
+    }
+
+    /**
+     * Leave most of the wiki rate limit to live questions between pages.
+     *
+     * @return false if interrupted
+     */
+    private static boolean pause()
+    {
+        try
+        {
+            Thread.sleep(PAGE_INTERVAL_MS);
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Bloom load()
+    {
+        if (!Files.isRegularFile(file))
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != FORMAT_VERSION)
+            {
+                return null;
+            }
+            long builtAt = in.readLong();
+            int hashes = in.readInt();
+            long[] bits = new long[in.readInt()];
+            for (int i = 0; i < bits.length; i++)
+            {
+                bits[i] = in.readLong();
+            }
+            return new Bloom(bits, hashes, builtAt);
+        }
+        catch (IOException e)
+        {
+            log.debug("Discarding unreadable wiki title filter {}", file, e);
+            return null;
+        }
+    }
+
+    private void save(Bloom filter)
+    {
+        try
+        {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "titles", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+            {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(filter.builtAt);
+                out.writeInt(filter.hashes);
+                out.writeInt(filter.bits.length);
+                for (long word : filter.bits)
+                {
+                    out.writeLong(word);
+                }
+            }
+
+            try
+            {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Failed to save wiki title filter to {}", file, e);
+        }
+    }
+
+    /**
+     * A plain Bloom filter: k bit positions per key from double hashing of a 64-bit FNV-1a hash.
+     */
+    private static class Bloom
+    {
+        final long[] bits;
+        final int hashes;
+        final long builtAt;
+
+        Bloom(int expected, long builtAt)
+        {
+            // Standard sizing: m = -n ln p / (ln 2)^2 bits and k = m/n ln 2 hashes
+            long m = (long) Math.ceil(-Math.max(1, expected) * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2)));
+            this.bits = new long[(int) ((m + 63) / 64)];
+            this.hashes = Math.max(1, (int) Math.round((double) m / Math.max(1, expected) * Math.log(2)));
+            this.builtAt = builtAt;
+        }
+
+        Bloom(long[] bits, int hashes, long builtAt)
+        {
+            this.bits = bits;
+            this.hashes = hashes;
+            this.builtAt = builtAt;
+        }
+
+        void add(String key)
+        {
+            long h1 = fnv1a(key);
+            long h2 = mix(h1) | 1;
+            long m = bits.length * 64L;
+            for (int i = 0; i < hashes; i++)
+            {
+                long bit = Long.remainderUnsigned(h1 + i * h2, m);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String key)
+        {
+            long h1 = fnv1a(key);
+            long h2 = mix(h1) | 1;
+            long m = bits.length * 64L;
+            for (int i = 0; i < hashes; i++)
+            {
+                long bit = Long.remainderUnsigned(h1 + i * h2, m);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long fnv1a(String key)
+        {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8))
+            {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+
+        // MurmurHash3's 64-bit finalizer, to derive a second independent-enough hash
+        private static long mix(long h)
+        {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.gnomegpt.wiki;
+
+import java.util.regex.Pattern;
+
+/**
+ * Turns page wikitext into plain text close to what TextExtracts' explaintext mode returns:
+ * templates, tables, references, files and markup are dropped, links keep their label and
+ * "== Section ==" headings are kept so pages can still be split by section.
+ * <p>
+ * A few inline templates that carry facts the LLM needs (skill requirements, coin amounts,
+ * item links) are rendered as text instead of being dropped.
+ */
+final class WikitextCleaner
+{
+    private static final Pattern COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+    private static final Pattern REF = Pattern.compile("<ref[^>/]*/>|<ref[^>]*>.*?</ref>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern FILE_LINK = Pattern.compile("\\[\\[(?:File|Image|Category):[^\\[\\]]*(?:\\[\\[[^\\]]*\\]\\][^\\[\\]]*)*\\]\\]", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PIPED_LINK = Pattern.compile("\\[\\[[^|\\]]*\\|([^\\]]*)\\]\\]");
+    private static final Pattern LINK = Pattern.compile("\\[\\[([^\\]]*)\\]\\]");
+    private static final Pattern EXTERNAL_LINK = Pattern.compile("\\[https?://\\S+\\s([^\\]]*)\\]");
+    private static final Pattern BARE_EXTERNAL_LINK = Pattern.compile("\\[https?://[^\\]]*\\]");
+    private static final Pattern HTML_TAG = Pattern.compile("<[^>]+>");
+    private static final Pattern MAGIC_WORD = Pattern.compile("__[A-Z]+__");
+    private static final Pattern LIST_MARKER = Pattern.compile("(?m)^[*#:;]+\\s*");
+    private static final Pattern TEMPLATE_ARGS = Pattern.compile("\\s*\\|\\s*");
+    private static final Pattern BLANK_LINES = Pattern.compile("\\n{3,}");
+
+    private WikitextCleaner()
+    {
+    }
+
+    static String toPlainText(String wikitext)
+    {
+        if (wikitext == null || wikitext.isEmpty())
+        {
+            return "";
+        }
+
+        String text = COMMENT.matcher(wikitext).replaceAll("");
+        text = REF.matcher(text).replaceAll("");
+        text = stripTemplatesAndTables(text);
+        text = FILE_LINK.matcher(text).replaceAll("");
+        text = PIPED_LINK.matcher(text).replaceAll("$1");
+        text = LINK.matcher(text).replaceAll("$1");
+        text = EXTERNAL_LINK.matcher(text).replaceAll("$1");
+        text = BARE_EXTERNAL_LINK.matcher(text).replaceAll("");
+        text = text.replace("'''", "").replace("''", "");
+        text = HTML_TAG.matcher(text).replaceAll("");
+        text = MAGIC_WORD.matcher(text).replaceAll("");
+        text = text.replace("&nbsp;", " ").replace("&amp;", "&").replace("&ndash;", "–");
+        text = LIST_MARKER.matcher(text).replaceAll("- ");
+
+        StringBuilder sb = new StringBuilder(text.length());
+        for (String line : text.split("\n"))
+        {
+            sb.append(line.trim()).append('\n');
+        }
+        return BLANK_LINES.matcher(sb).replaceAll("\n\n").trim();
+    }
+
+    /**
+     * Remove {{templates}} (which nest) and {| tables |}, keeping the text of a few known
+     * inline templates.
+     */
+    private static String stripTemplatesAndTables(String text)
+    {
+        StringBuilder out = new StringBuilder(text.length());
+        int templateDepth = 0;
+        int tableDepth = 0;
+        int templateStart = -1;
+        int i = 0;
+        int n = text.length();
+
+        while (i < n)
+        {
+            boolean lineStart = i == 0 || text.charAt(i - 1) == '\n';
+            if (text.startsWith("{{", i))
+            {
+                if (templateDepth == 0)
+                {
+                    templateStart = i + 2;
+                }
+                templateDepth++;
+                i += 2;
+            }
+            else if (templateDepth > 0 && text.startsWith("}}", i))
+            {
+                templateDepth--;
+                if (templateDepth == 0 && tableDepth == 0)
+                {
+                    out.append(renderTemplate(text.substring(templateStart, i)));
+                }
+                i += 2;
+            }
+            else if (templateDepth == 0 && lineStart && text.startsWith("{|", i))
+            {
+                tableDepth++;
+                i += 2;
+            }
+            else if (templateDepth == 0 && tableDepth > 0 && lineStart && text.startsWith("|}", i))
+            {
+                tableDepth--;
+                i += 2;
+            }
+            else
+            {
+                if (templateDepth == 0 && tableDepth == 0)
+                {
+                    out.append(text.charAt(i));
+                }
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static String renderTemplate(String body)
+    {
+        if (body.contains("{{"))
+        {
+            return "";
+        }
+
+        String[] parts = TEMPLATE_ARGS.split(body.trim());
+        String name = parts[0].trim().toLowerCase();
+        switch (name)
+        {
+            case "scp":
+                // {{SCP|Agility|52}} -> "52 Agility"
+                if (parts.length >= 3 && isPositional(parts[2]))
+                {
+                    return parts[2] + " " + parts[1];
+                }
+                return parts.length >= 2 ? parts[1] : "";
+            case "coins":
+                return parts.length >= 2 && isPositional(parts[1]) ? parts[1] + " coins" : "";
+            case "plink":
+            case "plinkt":
+                return parts.length >= 2 ? parts[1] : "";
+            default:
+                return "";
+        }
+    }
+
+    private static boolean isPositional(String arg)
+    {
+        return !arg.isEmpty() && arg.indexOf('=') < 0;
+    }
+}
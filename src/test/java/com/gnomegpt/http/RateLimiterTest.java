@@ -0,0 +1,153 @@
+package com.gnomegpt.http;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RateLimiterTest
+{
+    private static final long LONG_WAIT = 60_000;
+
+    /**
+     * Time stands still unless a test moves it. Sleeping doesn't move it either, which is how
+     * a burst of parallel callers sees the bucket: each reserves a slot before any of them wakes.
+     */
+    private static class FakeClock implements RateLimiter.Clock
+    {
+        long now = 1_000_000_000L;
+        long slept = 0;
+
+        @Override
+        public long nanoTime()
+        {
+            return now;
+        }
+
+        @Override
+        public void sleep(long nanos)
+        {
+            slept += nanos;
+        }
+
+        void advance(long millis)
+        {
+            now += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+
+    @Test
+    public void burstGoesOutThenRequestsAreSpaced() throws IOException
+    {
+        RateLimiter limiter = new RateLimiter(5, 5, clock);
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(0, limiter.acquire(LONG_WAIT));
+        }
+        assertEquals(0, clock.slept);
+
+        // Queued callers each push the next slot back by one interval
+        assertEquals(200, limiter.acquire(LONG_WAIT), 1);
+        assertEquals(400, limiter.acquire(LONG_WAIT), 1);
+        assertEquals(600, limiter.acquire(LONG_WAIT), 1);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1200), clock.slept, 1e6);
+    }
+
+    @Test
+    public void quietSpellRefillsOnlyUpToTheBurst() throws IOException
+    {
+        RateLimiter limiter = new RateLimiter(2, 4, clock);
+        for (int i = 0; i < 4; i++)
+        {
+            limiter.acquire(LONG_WAIT);
+        }
+
+        clock.advance(60_000);
+        for (int i = 0; i < 4; i++)
+        {
+            assertEquals(0, limiter.acquire(LONG_WAIT));
+        }
+        assertEquals(500, limiter.acquire(LONG_WAIT), 1);
+    }
+
+    @Test
+    public void tooLongAWaitThrowsWithoutTakingTheSlot() throws IOException
+    {
+        RateLimiter limiter = new RateLimiter(1, 1, clock);
+        limiter.acquire(LONG_WAIT);
+
+        try
+        {
+            limiter.acquire(500);
+            fail("Waited past maxWaitMillis");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+        assertEquals(1000, limiter.acquire(LONG_WAIT), 1);
+    }
+
+    @Test
+    public void backOffHalvesTheRateAndPausesForRetryAfter() throws IOException
+    {
+        RateLimiter limiter = new RateLimiter(5, 5, clock);
+        limiter.backOff(2000);
+
+        // 2.5/s now: the 2s pause is five slots of debt, then one more interval for this request
+        assertEquals(2400, limiter.acquire(LONG_WAIT), 1);
+        assertEquals(400, spacing(limiter), 1);
+    }
+
+    @Test
+    public void backOffNeverDropsBelowAFloor() throws IOException
+    {
+        RateLimiter limiter = new RateLimiter(5, 5, clock);
+        for (int i = 0; i < 20; i++)
+        {
+            limiter.backOff(0);
+        }
+        // A tenth of the configured rate
+        assertEquals(2000, spacing(limiter), 1);
+    }
+
+    @Test
+    public void successesWinTheRateBackUpToTheConfiguredOne() throws IOException
+    {
+        RateLimiter limiter = new RateLimiter(4, 4, clock);
+        limiter.backOff(0);
+        assertEquals(500, spacing(limiter), 1);
+
+        // Each success adds 5% of the configured rate: 2/s + 5 x 0.2/s = 3/s
+        for (int i = 0; i < 5; i++)
+        {
+            limiter.onSuccess();
+        }
+        assertEquals(333, spacing(limiter), 1);
+
+        for (int i = 0; i < 100; i++)
+        {
+            limiter.onSuccess();
+        }
+        assertEquals(250, spacing(limiter), 1);
+    }
+
+    /**
+     * @return the gap between two back-to-back reservations once the bucket is empty, in ms
+     */
+    private long spacing(RateLimiter limiter) throws IOException
+    {
+        long first;
+        do
+        {
+            first = limiter.acquire(LONG_WAIT);
+        }
+        while (first == 0);
+        return limiter.acquire(LONG_WAIT) - first;
+    }
+}
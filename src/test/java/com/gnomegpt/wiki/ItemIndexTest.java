@@ -0,0 +1,124 @@
+package com.gnomegpt.wiki;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ItemIndexTest
+{
+    private static final int SHARK = 385;
+    private static final int CADAVA_BERRIES = 753;
+    private static final int PRAYER_POTION_4 = 2434;
+    private static final int PRAYER_POTION_3 = 139;
+    private static final int SUPER_RESTORE_4 = 3024;
+    private static final int SUPER_RESTORE_2 = 3028;
+    private static final int RESTORE_POTION_4 = 2430;
+    private static final int ANTIPOISON = 9001;
+    private static final int ANTIPOISON_4 = 2446;
+    private static final int DRAGON_PICKAXE = 11920;
+    private static final int DRAGON_PICKAXE_OR = 12797;
+    private static final int DRAGON_DAGGER = 1215;
+    private static final int DRAGON_DAGGER_P = 5698;
+
+    // Out of id order, with doses listed low to high, as the mapping comes
+    private final ItemIndex index = new ItemIndex(
+        new int[]{PRAYER_POTION_3, SHARK, SUPER_RESTORE_2, CADAVA_BERRIES, PRAYER_POTION_4, SUPER_RESTORE_4,
+            ANTIPOISON_4, ANTIPOISON, DRAGON_PICKAXE_OR, DRAGON_DAGGER_P, DRAGON_PICKAXE, DRAGON_DAGGER, RESTORE_POTION_4, 1, 2},
+        new String[]{"Prayer potion(3)", "Shark", "Super restore(2)", "Cadava berries", "Prayer potion(4)",
+            "Super restore(4)", "Antipoison(4)", "Antipoison", "Dragon pickaxe (or)", "Dragon dagger(p++)",
+            "Dragon pickaxe", "Dragon dagger", "Restore potion(4)", "Rune platebody", "Rune pickaxe"});
+
+    @Test
+    public void exactNamesIgnoreCase()
+    {
+        assertEquals(SHARK, index.find("shark"));
+        assertEquals(SHARK, index.find("  SHARK "));
+        assertEquals(SUPER_RESTORE_2, index.find("super restore(2)"));
+    }
+
+    @Test
+    public void pluralsFoldToTheItem()
+    {
+        assertEquals(SHARK, index.find("sharks"));
+        assertEquals(CADAVA_BERRIES, index.find("cadava berry"));
+        assertEquals(SUPER_RESTORE_4, index.find("super restores"));
+    }
+
+    @Test
+    public void notedIsIgnored()
+    {
+        assertEquals(SHARK, index.find("Shark (noted)"));
+        assertEquals(SHARK, index.findExact("sharks(noted)"));
+    }
+
+    @Test
+    public void undosedNameMeansTheMostDoses()
+    {
+        assertEquals(PRAYER_POTION_4, index.find("prayer potion"));
+        assertEquals(PRAYER_POTION_4, index.find("prayer potions"));
+        // A dose that doesn't exist still lands on the potion
+        assertEquals(PRAYER_POTION_4, index.find("prayer potion(1)"));
+    }
+
+    @Test
+    public void undosedItemBeatsAnyDose()
+    {
+        assertEquals(ANTIPOISON, index.find("antipoison"));
+        assertEquals(ANTIPOISON, index.find("antipoison(1)"));
+        assertEquals(ANTIPOISON_4, index.find("antipoison(4)"));
+    }
+
+    @Test
+    public void fuzzyPrefersPrefixesAndShorterNames()
+    {
+        assertEquals(DRAGON_PICKAXE, index.find("dragon pick"));
+        assertEquals(DRAGON_PICKAXE, index.find("dragon pickax"));
+        assertEquals(DRAGON_DAGGER, index.find("dragon dagge"));
+        assertEquals(SHARK, index.find("sharkk"));
+        // "Super restore" shares more trigrams, but only "Restore potion" starts with the query
+        assertEquals(RESTORE_POTION_4, index.find("restore"));
+        // Both normalize to "antipoison", so they score the same and the shorter name wins
+        assertEquals(ANTIPOISON, index.find("antipoisn"));
+    }
+
+    @Test
+    public void weakFuzzyMatchesAreRejected()
+    {
+        assertEquals(-1, index.find("abyssal whip"));
+        // Shares only " sh" with "Shark"
+        assertEquals(-1, index.find("shortbow"));
+        assertEquals(-1, index.find("!!"));
+        assertEquals(-1, index.find(""));
+        assertEquals(-1, index.find(null));
+    }
+
+    @Test
+    public void findExactSkipsTheFuzzyTier()
+    {
+        assertEquals(-1, index.findExact("dragon pick"));
+        assertEquals(-1, index.findExact("sharkk"));
+        assertEquals(PRAYER_POTION_4, index.findExact("prayer potions"));
+        assertEquals(DRAGON_PICKAXE, index.findExact("Dragon pickaxe"));
+    }
+
+    @Test
+    public void namesById()
+    {
+        assertEquals("Dragon pickaxe", index.getName(DRAGON_PICKAXE));
+        assertNull(index.getName(-5));
+        assertEquals(15, index.size());
+    }
+
+    @Test
+    public void normalizeStripsDosePunctuationAndPlural()
+    {
+        assertEquals("prayer potion", ItemIndex.normalize("Prayer potions(4)"));
+        assertEquals("dragon dagger p", ItemIndex.normalize("Dragon dagger(p++)"));
+        assertEquals("cadava berry", ItemIndex.normalize("Cadava berries"));
+        assertEquals("torch", ItemIndex.normalize("Torches"));
+        assertEquals("shark", ItemIndex.normalize("Shark (noted)"));
+        assertEquals("grass", ItemIndex.normalize("Grass"));
+        assertEquals("fungus", ItemIndex.normalize("Fungus"));
+    }
+}
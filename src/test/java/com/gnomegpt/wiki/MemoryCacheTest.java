@@ -0,0 +1,119 @@
+package com.gnomegpt.wiki;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryCacheTest
+{
+    // Matches MemoryCache's per-entry bookkeeping estimate
+    private static final int OVERHEAD = 96;
+    private static final long TTL = 60_000;
+
+    private long now = 1_700_000_000_000L;
+
+    private MemoryCache cache(long maxBytes, boolean compress)
+    {
+        return new MemoryCache("test", maxBytes, compress, () -> now);
+    }
+
+    private static long cost(String key, String value)
+    {
+        return OVERHEAD + 2L * key.length() + value.length();
+    }
+
+    @Test
+    public void bytesFollowPutsReplacementsAndClear()
+    {
+        MemoryCache cache = cache(1 << 20, false);
+        cache.put("a", "hello", TTL);
+        cache.put("bb", "world!", TTL);
+        assertEquals(cost("a", "hello") + cost("bb", "world!"), cache.bytes());
+
+        cache.put("a", "hi", TTL);
+        assertEquals(cost("a", "hi") + cost("bb", "world!"), cache.bytes());
+        assertEquals("hi", cache.get("a"));
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.bytes());
+        assertNull(cache.get("bb"));
+    }
+
+    @Test
+    public void expiredEntriesMissAndGiveBackTheirBytes()
+    {
+        MemoryCache cache = cache(1 << 20, false);
+        cache.put("short", "x", 1000);
+        cache.put("long", "y", TTL);
+
+        now += 1000;
+        assertEquals("x", cache.get("short"));
+        now += 1;
+        assertNull(cache.get("short"));
+        assertEquals(cost("long", "y"), cache.bytes());
+        assertEquals("y", cache.get("long"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedUntilUnderTheCap()
+    {
+        String value = "0123456789";
+        long entry = cost("k1", value);
+        MemoryCache cache = cache(3 * entry, false);
+        cache.put("k1", value, TTL);
+        cache.put("k2", value, TTL);
+        cache.put("k3", value, TTL);
+        assertEquals(3 * entry, cache.bytes());
+
+        cache.get("k1");
+        cache.put("k4", value, TTL);
+        assertNull(cache.get("k2"));
+        assertEquals(value, cache.get("k1"));
+        assertEquals(value, cache.get("k3"));
+        assertEquals(value, cache.get("k4"));
+        assertEquals(3 * entry, cache.bytes());
+
+        // A bigger value pushes out as many of the oldest entries as it needs to, and no more
+        String big = value + value + value;
+        cache.put("k5", big, TTL);
+        assertEquals(entry + cost("k5", big), cache.bytes());
+        assertNull(cache.get("k1"));
+        assertNull(cache.get("k3"));
+        assertEquals(value, cache.get("k4"));
+        assertEquals(big, cache.get("k5"));
+        assertTrue(cache.stats().endsWith("| 3 evicted"));
+    }
+
+    @Test
+    public void valueLargerThanTheCapIsNotStored()
+    {
+        MemoryCache cache = cache(200, false);
+        cache.put("keep", "me", TTL);
+        cache.put("huge", new String(new char[500]).replace('\0', 'z'), TTL);
+
+        assertNull(cache.get("huge"));
+        assertEquals("me", cache.get("keep"));
+        assertEquals(cost("keep", "me"), cache.bytes());
+    }
+
+    @Test
+    public void largeValuesAreStoredDeflatedAndCountedThatWay()
+    {
+        MemoryCache cache = cache(1 << 20, true);
+        StringBuilder page = new StringBuilder();
+        for (int i = 0; i < 400; i++)
+        {
+            page.append("The dragon pickaxe is dropped by the King Black Dragon. ");
+        }
+        String text = page.toString() + "é";
+        cache.put("page", text, TTL);
+        cache.put("small", "under the threshold", TTL);
+
+        assertTrue(cache.bytes() < text.length() / 4);
+        assertEquals(text, cache.get("page"));
+        assertEquals("under the threshold", cache.get("small"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.gnomegpt.wiki;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PriceHistoryTest
+{
+    private static final int HOUR = 3600;
+    private static final int WEEK_HOURS = 7 * 24;
+    private static final int ITEM = 4151;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void trendMatchesRecomputationAsTheRingWraps() throws IOException
+    {
+        PriceHistory history = new PriceHistory(folder.getRoot().toPath().resolve("history.bin"));
+        assertNull(history.trend(ITEM));
+
+        Random random = new Random(42);
+        List<long[]> points = new ArrayList<>();
+        int time = 1_700_000_000 / HOUR * HOUR;
+        long price = 1_500_000;
+        for (int step = 0; step < 1000; step++)
+        {
+            // Mostly hourly, with missed hours now and then and one gap longer than the whole ring
+            time += step == 600 ? 200 * HOUR : random.nextInt(10) == 0 ? (2 + random.nextInt(3)) * HOUR : HOUR;
+            price = Math.max(1, price + random.nextInt(60_001) - 30_000);
+            long traded = random.nextInt(8) == 0 ? 0 : price;
+            long volume = random.nextInt(6) == 0 ? -1 : random.nextInt(500);
+
+            history.backfill(ITEM, new StringReader(point(time, traded, volume)));
+            points.add(new long[]{time, traded, volume});
+
+            assertTrend(expected(points), history.trend(ITEM));
+        }
+    }
+
+    @Test
+    public void olderAndRepeatedPointsAreIgnored() throws IOException
+    {
+        PriceHistory history = new PriceHistory(folder.getRoot().toPath().resolve("history.bin"));
+        int time = 1_700_000_000 / HOUR * HOUR;
+        history.backfill(ITEM, new StringReader(point(time, 100, 10)));
+        history.backfill(ITEM, new StringReader(point(time + HOUR, 110, 20)));
+        history.backfill(ITEM, new StringReader(point(time + HOUR, 500, 500)));
+        history.backfill(ITEM, new StringReader(point(time, 500, 500)));
+
+        PriceTrend trend = history.trend(ITEM);
+        assertEquals(2, trend.getHours());
+        assertEquals(15 * 24, trend.getAverageDailyVolume());
+    }
+
+    private static String point(int time, long price, long volume)
+    {
+        String p = price > 0 ? Long.toString(price) : "null";
+        String v = volume >= 0 ? Long.toString(volume) : "null";
+        return "{\"data\":[{\"timestamp\":" + time + ",\"avgHighPrice\":" + p + ",\"avgLowPrice\":" + p
+            + ",\"highPriceVolume\":" + v + ",\"lowPriceVolume\":null}]}";
+    }
+
+    /**
+     * The trend worked out from scratch over the points a week-long ring should still hold.
+     */
+    private static PriceTrend expected(List<long[]> all)
+    {
+        long newest = all.get(all.size() - 1)[0];
+        List<long[]> window = new ArrayList<>();
+        for (long[] p : all)
+        {
+            if (newest - p[0] <= WEEK_HOURS * HOUR)
+            {
+                window.add(p);
+            }
+        }
+        window = window.subList(Math.max(0, window.size() - (WEEK_HOURS + 1)), window.size());
+
+        long volumeSum = 0;
+        int volumeCount = 0;
+        for (long[] p : window)
+        {
+            if (p[2] >= 0)
+            {
+                volumeSum += p[2];
+                volumeCount++;
+            }
+        }
+
+        List<Double> returns = new ArrayList<>();
+        for (int i = 1; i < window.size(); i++)
+        {
+            long[] prev = window.get(i - 1);
+            long[] cur = window.get(i);
+            if (prev[1] > 0 && cur[1] > 0 && cur[0] - prev[0] == HOUR)
+            {
+                returns.add(Math.log((double) cur[1] / prev[1]));
+            }
+        }
+        double volatility = Double.NaN;
+        if (returns.size() >= 2)
+        {
+            double mean = 0;
+            for (double r : returns)
+            {
+                mean += r;
+            }
+            mean /= returns.size();
+            double variance = 0;
+            for (double r : returns)
+            {
+                variance += (r - mean) * (r - mean);
+            }
+            volatility = Math.sqrt(variance / returns.size());
+        }
+
+        long latest = priceNear(window, newest);
+        return new PriceTrend(
+            change(latest, priceNear(window, newest - 24 * HOUR)),
+            change(latest, priceNear(window, newest - WEEK_HOURS * HOUR)),
+            volumeCount > 0 ? volumeSum * 24 / volumeCount : -1,
+            volatility,
+            window.size());
+    }
+
+    private static long priceNear(List<long[]> window, long t)
+    {
+        long found = 0;
+        for (long[] p : window)
+        {
+            if (p[0] <= t && p[0] >= t - 2 * HOUR && p[1] > 0)
+            {
+                found = p[1];
+            }
+        }
+        return found;
+    }
+
+    private static double change(long now, long then)
+    {
+        return now > 0 && then > 0 ? (double) (now - then) / then : Double.NaN;
+    }
+
+    private static void assertTrend(PriceTrend expected, PriceTrend actual)
+    {
+        assertEquals(expected.getHours(), actual.getHours());
+        assertEquals(expected.getAverageDailyVolume(), actual.getAverageDailyVolume());
+        assertEquals(expected.getChange24h(), actual.getChange24h(), 1e-12);
+        assertEquals(expected.getChange7d(), actual.getChange7d(), 1e-12);
+        assertEquals(expected.getVolatility(), actual.getVolatility(), 1e-9);
+    }
+}
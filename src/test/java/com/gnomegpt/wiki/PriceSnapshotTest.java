@@ -0,0 +1,132 @@
+package com.gnomegpt.wiki;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PriceSnapshotTest
+{
+    private static final String LATEST = "{\"data\":{"
+        + "\"2\":{\"high\":152,\"highTime\":1700000100,\"low\":148,\"lowTime\":1700000050},"
+        + "\"385\":{\"high\":null,\"highTime\":null,\"low\":900,\"lowTime\":1700000000},"
+        + "\"4151\":{\"high\":1500000},"
+        + "\"abc\":{\"high\":1},"
+        + "\"-3\":{\"high\":2},"
+        + "\"40000\":{\"high\":7,\"low\":5,\"extra\":{\"nested\":[1,2]}}"
+        + "}}";
+
+    @Test
+    public void latestReadsEveryField() throws IOException
+    {
+        PriceSnapshot snapshot = PriceSnapshot.parse(new StringReader(LATEST), System.currentTimeMillis(), null);
+
+        assertEquals(152, snapshot.getHigh(2));
+        assertEquals(148, snapshot.getLow(2));
+        assertEquals(1700000100, snapshot.getHighTime(2));
+        assertEquals(1700000050, snapshot.getLowTime(2));
+        assertTrue(snapshot.has(2));
+        assertEquals(4, snapshot.size());
+    }
+
+    @Test
+    public void nullAndMissingFieldsReadAsUnknown() throws IOException
+    {
+        PriceSnapshot snapshot = PriceSnapshot.parse(new StringReader(LATEST), System.currentTimeMillis(), null);
+
+        assertEquals(-1, snapshot.getHigh(385));
+        assertEquals(0, snapshot.getHighTime(385));
+        assertEquals(900, snapshot.getLow(385));
+        assertTrue(snapshot.has(385));
+
+        assertEquals(1500000, snapshot.getHigh(4151));
+        assertEquals(-1, snapshot.getLow(4151));
+        assertEquals(0, snapshot.getLowTime(4151));
+
+        assertFalse(snapshot.has(3));
+        assertEquals(-1, snapshot.getHigh(3));
+        assertEquals(-1, snapshot.getVolume(2));
+    }
+
+    @Test
+    public void nonNumericAndNegativeIdsAreSkipped() throws IOException
+    {
+        PriceSnapshot snapshot = PriceSnapshot.parse(new StringReader(LATEST), System.currentTimeMillis(), null);
+
+        assertFalse(snapshot.has(-3));
+        assertEquals(-1, snapshot.getHigh(-3));
+        assertEquals(-1, snapshot.getHigh(1));
+    }
+
+    @Test
+    public void idsPastTheInitialCapacityGrowTheColumns() throws IOException
+    {
+        PriceSnapshot snapshot = PriceSnapshot.parse(new StringReader(LATEST), System.currentTimeMillis(), null);
+
+        assertEquals(7, snapshot.getHigh(40000));
+        assertEquals(5, snapshot.getLow(40000));
+        // Slots between the old capacity and the new id are unset, not zero
+        assertFalse(snapshot.has(35000));
+        assertEquals(-1, snapshot.getLow(35000));
+        assertEquals(-1, snapshot.getHigh(1_000_000));
+    }
+
+    @Test
+    public void hourlySumsBothVolumesAndAveragesPrices() throws IOException
+    {
+        PriceSnapshot.Hourly hourly = PriceSnapshot.parseHourly(new StringReader("{\"data\":{"
+            + "\"2\":{\"avgHighPrice\":150,\"highPriceVolume\":1234,\"avgLowPrice\":146,\"lowPriceVolume\":567},"
+            + "\"385\":{\"avgHighPrice\":null,\"highPriceVolume\":0,\"avgLowPrice\":880,\"lowPriceVolume\":12},"
+            + "\"4151\":{\"avgHighPrice\":null,\"highPriceVolume\":null,\"avgLowPrice\":null,\"lowPriceVolume\":40},"
+            + "\"40000\":{\"avgHighPrice\":9}"
+            + "},\"timestamp\":1700002800}"));
+
+        assertEquals(1700002800, hourly.timestamp);
+        assertEquals(148, hourly.getPrice(2));
+        assertEquals(1234 + 567, hourly.getVolume(2));
+        assertEquals(880, hourly.getPrice(385));
+        assertEquals(12, hourly.getVolume(385));
+        assertEquals(0, hourly.getPrice(4151));
+        assertEquals(40, hourly.getVolume(4151));
+        assertEquals(9, hourly.getPrice(40000));
+        assertEquals(-1, hourly.getVolume(40000));
+        assertEquals(-1, hourly.getVolume(3));
+        assertEquals(0, hourly.getPrice(-1));
+    }
+
+    @Test
+    public void volumesCarryOverToTheNextSnapshot() throws IOException
+    {
+        PriceSnapshot.Hourly hourly = PriceSnapshot.parseHourly(new StringReader(
+            "{\"data\":{\"2\":{\"highPriceVolume\":10,\"lowPriceVolume\":5}},\"timestamp\":1700002800}"));
+        PriceSnapshot first = PriceSnapshot.parse(new StringReader(LATEST), 1000, null).withVolumes(hourly, 1000);
+        assertEquals(15, first.getVolume(2));
+        assertEquals(-1, first.getVolume(385));
+
+        PriceSnapshot next = PriceSnapshot.parse(new StringReader(LATEST), 2000, first);
+        assertEquals(15, next.getVolume(2));
+        assertEquals(first.volumeAgeMillis(), next.volumeAgeMillis(), 1000);
+    }
+
+    @Test
+    public void malformedBodiesThrowIOException()
+    {
+        for (String body : new String[]{"[]", "{\"data\":[1,2]}", "{\"data\":{\"2\":{\"high\":\"lots\"}}}", "{\"data\":{"})
+        {
+            try
+            {
+                PriceSnapshot.parse(new StringReader(body), 0, null);
+                fail("Parsed " + body);
+            }
+            catch (IOException e)
+            {
+                // expected
+            }
+        }
+    }
+}